@@ -0,0 +1,500 @@
+package sorting;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+
+/**
+ * In-place sorts for data that is not a single Java array:
+ * RandomAccess lists, sorted through get and set with no copy, and
+ * chunked "big arrays" (arrays of arrays) indexed by long, which can
+ * hold more than 2^31 items. Every chunk but the last must have the
+ * same power-of-two length, so an index splits into chunk and offset
+ * with a shift and a mask.
+ * The engine is quicksort with median-of-three partitioning and an
+ * insertion sort cutoff, falling back to heapsort when the recursion
+ * passes 2 log2 N, so the worst case is O(N log N). It is not stable.
+ */
+public final class BigSort
+{
+    private static final int CUTOFF = 16;
+
+    private BigSort( )
+    {
+    }
+
+    /**
+     * Sort a list in place.
+     * A RandomAccess list is sorted through get and set; any other list
+     * is copied out, sorted with Sort.mergeSort, and written back.
+     * @param list a list of Comparable items.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void sort( List<AnyType> list )
+    {
+        if( list instanceof RandomAccess )
+        {
+            sort( new ListSequence<>( list ) );
+            return;
+        }
+
+        @SuppressWarnings( "unchecked" )
+        AnyType [ ] a = list.toArray( (AnyType[]) new Comparable<?>[ list.size( ) ] );
+        Sort.mergeSort( a );
+        ListIterator<AnyType> it = list.listIterator( );
+        for( AnyType x : a )
+        {
+            it.next( );
+            it.set( x );
+        }
+    }
+
+    /**
+     * Sort a chunked array in place, as one sequence of
+     * the chunks' items in order.
+     * @param chunks the chunks; all but the last have the same power-of-two length.
+     * @throws IllegalArgumentException if the chunk lengths are not valid.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void sort( AnyType [ ] [ ] chunks )
+    {
+        sort( new ChunkSequence<>( chunks ) );
+    }
+
+    /**
+     * Sort a chunked array of longs in place, as one sequence of
+     * the chunks' items in order.
+     * @param chunks the chunks; all but the last have the same power-of-two length.
+     * @throws IllegalArgumentException if the chunk lengths are not valid.
+     */
+    public static void sort( long [ ] [ ] chunks )
+    {
+        LongChunks a = new LongChunks( chunks );
+        quicksort( a, 0, a.size - 1, 2 * log2( a.size ) );
+    }
+
+    /**
+     * Return the total number of items in a chunked array.
+     */
+    public static long length( Object [ ] chunks )
+    {
+        long n = 0;
+        for( Object c : chunks )
+            n += Array.getLength( c );
+        return n;
+    }
+
+    private static <AnyType extends Comparable<? super AnyType>>
+    void sort( Sequence<AnyType> a )
+    {
+        quicksort( a, 0, a.size( ) - 1, 2 * log2( a.size( ) ) );
+    }
+
+    private static int log2( long n )
+    {
+        return 63 - Long.numberOfLeadingZeros( Math.max( n, 1 ) );
+    }
+
+    /**
+     * Internal method that returns the chunk shift, checking that every
+     * chunk but the last has the same power-of-two length.
+     */
+    private static int chunkShift( int [ ] lengths )
+    {
+        if( lengths.length <= 1 )
+            return 31;
+        int len = lengths[ 0 ];
+        if( Integer.bitCount( len ) != 1 )
+            throw new IllegalArgumentException( "chunk length is not a power of two: " + len );
+        for( int i = 1; i < lengths.length; i++ )
+            if( i < lengths.length - 1 ? lengths[ i ] != len : lengths[ i ] > len )
+                throw new IllegalArgumentException( "chunk " + i + " has length " + lengths[ i ]
+                                                    + ", expected " + len );
+        return Integer.numberOfTrailingZeros( len );
+    }
+
+    // A long-indexed sequence of items that can be read and written in place
+    private static abstract class Sequence<AnyType>
+    {
+        abstract long size( );
+        abstract AnyType get( long i );
+        abstract void set( long i, AnyType x );
+
+        void swap( long i, long j )
+        {
+            AnyType tmp = get( i );
+            set( i, get( j ) );
+            set( j, tmp );
+        }
+    }
+
+    private static final class ListSequence<AnyType> extends Sequence<AnyType>
+    {
+        private final List<AnyType> list;
+
+        ListSequence( List<AnyType> list )
+        {
+            this.list = list;
+        }
+
+        long size( )
+        {
+            return list.size( );
+        }
+
+        AnyType get( long i )
+        {
+            return list.get( (int) i );
+        }
+
+        void set( long i, AnyType x )
+        {
+            list.set( (int) i, x );
+        }
+    }
+
+    private static final class ChunkSequence<AnyType> extends Sequence<AnyType>
+    {
+        private final AnyType [ ] [ ] chunks;
+        private final int shift;
+        private final long mask;
+        private final long size;
+
+        ChunkSequence( AnyType [ ] [ ] chunks )
+        {
+            int [ ] lengths = new int[ chunks.length ];
+            for( int i = 0; i < chunks.length; i++ )
+                lengths[ i ] = chunks[ i ].length;
+            this.chunks = chunks;
+            shift = chunkShift( lengths );
+            mask = ( 1L << shift ) - 1;
+            size = length( chunks );
+        }
+
+        long size( )
+        {
+            return size;
+        }
+
+        AnyType get( long i )
+        {
+            return chunks[ (int) ( i >>> shift ) ][ (int) ( i & mask ) ];
+        }
+
+        void set( long i, AnyType x )
+        {
+            chunks[ (int) ( i >>> shift ) ][ (int) ( i & mask ) ] = x;
+        }
+    }
+
+    /**
+     * Internal quicksort method that loops on the larger side.
+     * @param a the sequence.
+     * @param left the left-most index of the subsequence.
+     * @param right the right-most index of the subsequence.
+     * @param depth the partitioning levels left before heapsort.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    void quicksort( Sequence<AnyType> a, long left, long right, int depth )
+    {
+        while( left + CUTOFF <= right )
+        {
+            if( depth-- == 0 )
+            {
+                heapsort( a, left, right );
+                return;
+            }
+
+            AnyType pivot = median3( a, left, right );
+
+                // Begin partitioning
+            long i = left, j = right - 1;
+            for( ; ; )
+            {
+                while( a.get( ++i ).compareTo( pivot ) < 0 ) { }
+                while( a.get( --j ).compareTo( pivot ) > 0 ) { }
+                if( i < j )
+                    a.swap( i, j );
+                else
+                    break;
+            }
+
+            a.swap( i, right - 1 );   // Restore pivot
+
+            if( i - left < right - i )
+            {
+                quicksort( a, left, i - 1, depth );
+                left = i + 1;
+            }
+            else
+            {
+                quicksort( a, i + 1, right, depth );
+                right = i - 1;
+            }
+        }
+        insertionSort( a, left, right );
+    }
+
+    /**
+     * Return median of left, center, and right.
+     * Order these and hide the pivot.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    AnyType median3( Sequence<AnyType> a, long left, long right )
+    {
+        long center = ( left + right ) >>> 1;
+        if( a.get( center ).compareTo( a.get( left ) ) < 0 )
+            a.swap( left, center );
+        if( a.get( right ).compareTo( a.get( left ) ) < 0 )
+            a.swap( left, right );
+        if( a.get( right ).compareTo( a.get( center ) ) < 0 )
+            a.swap( center, right );
+
+            // Place pivot at position right - 1
+        a.swap( center, right - 1 );
+        return a.get( right - 1 );
+    }
+
+    private static <AnyType extends Comparable<? super AnyType>>
+    void insertionSort( Sequence<AnyType> a, long left, long right )
+    {
+        for( long p = left + 1; p <= right; p++ )
+        {
+            AnyType tmp = a.get( p );
+            long j;
+
+            for( j = p; j > left && tmp.compareTo( a.get( j - 1 ) ) < 0; j-- )
+                a.set( j, a.get( j - 1 ) );
+            a.set( j, tmp );
+        }
+    }
+
+    /**
+     * Internal heapsort of a[left..right], used when quicksort
+     * recurses too deeply.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    void heapsort( Sequence<AnyType> a, long left, long right )
+    {
+        long n = right - left + 1;
+        for( long i = n / 2 - 1; i >= 0; i-- )  /* buildHeap */
+            percDown( a, left, i, n );
+        for( long i = n - 1; i > 0; i-- )
+        {
+            a.swap( left, left + i );           /* deleteMax */
+            percDown( a, left, 0, i );
+        }
+    }
+
+    /**
+     * Method for heapsort of the subsequence starting at base.
+     * @param i the position from which to percolate down.
+     * @param n the logical size of the binary heap.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    void percDown( Sequence<AnyType> a, long base, long i, long n )
+    {
+        long child;
+        AnyType tmp;
+
+        for( tmp = a.get( base + i ); 2 * i + 1 < n; i = child )
+        {
+            child = 2 * i + 1;
+            if( child != n - 1 && a.get( base + child ).compareTo( a.get( base + child + 1 ) ) < 0 )
+                child++;
+            if( tmp.compareTo( a.get( base + child ) ) < 0 )
+                a.set( base + i, a.get( base + child ) );
+            else
+                break;
+        }
+        a.set( base + i, tmp );
+    }
+
+    // A chunked long array; the primitive engine below mirrors the generic one
+    private static final class LongChunks
+    {
+        final long [ ] [ ] chunks;
+        final int shift;
+        final long mask;
+        final long size;
+
+        LongChunks( long [ ] [ ] chunks )
+        {
+            int [ ] lengths = new int[ chunks.length ];
+            long n = 0;
+            for( int i = 0; i < chunks.length; i++ )
+            {
+                lengths[ i ] = chunks[ i ].length;
+                n += lengths[ i ];
+            }
+            this.chunks = chunks;
+            shift = chunkShift( lengths );
+            mask = ( 1L << shift ) - 1;
+            size = n;
+        }
+
+        long get( long i )
+        {
+            return chunks[ (int) ( i >>> shift ) ][ (int) ( i & mask ) ];
+        }
+
+        void set( long i, long x )
+        {
+            chunks[ (int) ( i >>> shift ) ][ (int) ( i & mask ) ] = x;
+        }
+
+        void swap( long i, long j )
+        {
+            long tmp = get( i );
+            set( i, get( j ) );
+            set( j, tmp );
+        }
+    }
+
+    private static void quicksort( LongChunks a, long left, long right, int depth )
+    {
+        while( left + CUTOFF <= right )
+        {
+            if( depth-- == 0 )
+            {
+                heapsort( a, left, right );
+                return;
+            }
+
+            long pivot = median3( a, left, right );
+
+                // Begin partitioning
+            long i = left, j = right - 1;
+            for( ; ; )
+            {
+                while( a.get( ++i ) < pivot ) { }
+                while( a.get( --j ) > pivot ) { }
+                if( i < j )
+                    a.swap( i, j );
+                else
+                    break;
+            }
+
+            a.swap( i, right - 1 );   // Restore pivot
+
+            if( i - left < right - i )
+            {
+                quicksort( a, left, i - 1, depth );
+                left = i + 1;
+            }
+            else
+            {
+                quicksort( a, i + 1, right, depth );
+                right = i - 1;
+            }
+        }
+        insertionSort( a, left, right );
+    }
+
+    private static long median3( LongChunks a, long left, long right )
+    {
+        long center = ( left + right ) >>> 1;
+        if( a.get( center ) < a.get( left ) )
+            a.swap( left, center );
+        if( a.get( right ) < a.get( left ) )
+            a.swap( left, right );
+        if( a.get( right ) < a.get( center ) )
+            a.swap( center, right );
+
+        a.swap( center, right - 1 );
+        return a.get( right - 1 );
+    }
+
+    private static void insertionSort( LongChunks a, long left, long right )
+    {
+        for( long p = left + 1; p <= right; p++ )
+        {
+            long tmp = a.get( p );
+            long j;
+
+            for( j = p; j > left && tmp < a.get( j - 1 ); j-- )
+                a.set( j, a.get( j - 1 ) );
+            a.set( j, tmp );
+        }
+    }
+
+    private static void heapsort( LongChunks a, long left, long right )
+    {
+        long n = right - left + 1;
+        for( long i = n / 2 - 1; i >= 0; i-- )
+            percDown( a, left, i, n );
+        for( long i = n - 1; i > 0; i-- )
+        {
+            a.swap( left, left + i );
+            percDown( a, left, 0, i );
+        }
+    }
+
+    private static void percDown( LongChunks a, long base, long i, long n )
+    {
+        long child;
+        long tmp;
+
+        for( tmp = a.get( base + i ); 2 * i + 1 < n; i = child )
+        {
+            child = 2 * i + 1;
+            if( child != n - 1 && a.get( base + child ) < a.get( base + child + 1 ) )
+                child++;
+            if( tmp < a.get( base + child ) )
+                a.set( base + i, a.get( base + child ) );
+            else
+                break;
+        }
+        a.set( base + i, tmp );
+    }
+
+    // Sort a list in place against copy, sort and copy back
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        int [ ] values = new WorkloadGenerator( 5 ).uniform( N, N * 5 );
+        Integer [ ] boxed = WorkloadGenerator.boxed( values );
+
+        List<Integer> list = new ArrayList<>( );
+        for( Integer x : boxed )
+            list.add( x );
+        long start = System.nanoTime( );
+        Integer [ ] copy = list.toArray( new Integer[ 0 ] );
+        Sort.quicksort( copy );
+        for( int i = 0; i < N; i++ )
+            list.set( i, copy[ i ] );
+        System.out.println( "toArray + quicksort + copy back: " + ( System.nanoTime( ) - start ) );
+
+        list.clear( );
+        for( Integer x : boxed )
+            list.add( x );
+        start = System.nanoTime( );
+        sort( list );
+        System.out.println( "BigSort list: " + ( System.nanoTime( ) - start ) );
+        for( int i = 1; i < N; i++ )
+            if( list.get( i - 1 ) > list.get( i ) )
+                System.out.println( "Error: list out of order at " + i );
+
+        final int CHUNK = 1 << 16;
+        long [ ] [ ] chunks = new long[ ( N + CHUNK - 1 ) / CHUNK ][ ];
+        for( int c = 0; c < chunks.length; c++ )
+        {
+            chunks[ c ] = new long[ Math.min( CHUNK, N - c * CHUNK ) ];
+            for( int i = 0; i < chunks[ c ].length; i++ )
+                chunks[ c ][ i ] = values[ c * CHUNK + i ];
+        }
+        start = System.nanoTime( );
+        sort( chunks );
+        System.out.println( "BigSort long chunks: " + ( System.nanoTime( ) - start ) );
+        long prev = Long.MIN_VALUE;
+        for( long [ ] chunk : chunks )
+            for( long x : chunk )
+            {
+                if( x < prev )
+                    System.out.println( "Error: chunks out of order" );
+                prev = x;
+            }
+    }
+}
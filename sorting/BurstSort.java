@@ -0,0 +1,295 @@
+package sorting;
+
+import java.util.Arrays;
+
+/**
+ * Burstsort for large arrays of Strings.
+ * Strings are inserted into a trie whose leaves are small buckets of
+ * references. A bucket that grows past BURST_LIMIT "bursts" into a trie
+ * node, redistributing its strings one digit deeper. Most work then
+ * happens inside buckets that fit in cache, instead of in passes over
+ * the whole array. An in-order walk copies each bucket back and
+ * finishes it with multikey quicksort. The trie stops at MAX_DEPTH
+ * digits: below that, buckets of strings with a long shared prefix grow
+ * without bursting and multikey quicksort alone finishes them.
+ * Digits are the bytes of each char, high byte first (the digits of
+ * RadixSort.americanFlagSort), so the order is that of compareTo.
+ */
+public final class BurstSort
+{
+    // References per bucket before it bursts; 8192 references fit in L2
+    private static final int BURST_LIMIT = 8192;
+    private static final int INITIAL_BUCKET = 16;
+
+    // Trie depth in digits (32 chars); bounds the trie walk and the nodes made per burst
+    private static final int MAX_DEPTH = 64;
+
+    // Ranges this small are finished by insertion sort in multikey quicksort
+    private static final int MKQS_CUTOFF = 16;
+
+    private static final int FANOUT = 257;   // end of string, then 256 byte values
+
+    private BurstSort( )
+    {
+    }
+
+    /**
+     * Burstsort an array of Strings.
+     * @param a an array of Strings.
+     */
+    public static void sort( String [ ] a )
+    {
+        Node root = new Node( );
+        for( String s : a )
+            insert( root, s, 0 );
+        traverse( root, 0, a, 0 );
+    }
+
+    // An interior trie node; each child is a Node, a Bucket, or null
+    private static final class Node
+    {
+        final Object [ ] children = new Object[ FANOUT ];
+    }
+
+    private static final class Bucket
+    {
+        String [ ] items = new String[ INITIAL_BUCKET ];
+        int size;
+
+        void add( String s )
+        {
+            if( size == items.length )
+                items = Arrays.copyOf( items, size * 2 );
+            items[ size++ ] = s;
+        }
+    }
+
+    /**
+     * Internal method that inserts s below node, which is at digit d.
+     */
+    private static void insert( Node node, String s, int d )
+    {
+        for( ; ; )
+        {
+            int c = RadixSort.flagDigit( s, d );
+            Object child = node.children[ c ];
+            if( child instanceof Node )
+            {
+                node = (Node) child;
+                d++;
+                continue;
+            }
+
+            Bucket b = (Bucket) child;
+            if( b == null )
+                node.children[ c ] = b = new Bucket( );
+            b.add( s );
+
+                // Strings that ended here are all equal and never burst
+            if( c != 0 && b.size > BURST_LIMIT && d + 1 < MAX_DEPTH )
+                node.children[ c ] = burst( b, d + 1 );
+            return;
+        }
+    }
+
+    /**
+     * Internal method that replaces a full bucket by a node at digit d.
+     * When most strings share digit d, one child is still over the limit;
+     * it is burst in turn, iteratively, until no child is full or the
+     * trie reaches MAX_DEPTH.
+     */
+    private static Node burst( Bucket b, int d )
+    {
+        Node top = new Node( );
+        for( Node node = top; ; d++ )
+        {
+            Bucket full = null;
+            int fullDigit = 0;
+            for( int i = 0; i < b.size; i++ )
+            {
+                String s = b.items[ i ];
+                int c = RadixSort.flagDigit( s, d );
+                Bucket child = (Bucket) node.children[ c ];
+                if( child == null )
+                    node.children[ c ] = child = new Bucket( );
+                child.add( s );
+                if( c != 0 && child.size > BURST_LIMIT )
+                {
+                    full = child;
+                    fullDigit = c;
+                }
+            }
+
+            if( full == null || d + 1 >= MAX_DEPTH )
+                return top;
+            Node next = new Node( );
+            node.children[ fullDigit ] = next;
+            node = next;
+            b = full;
+        }
+    }
+
+    /**
+     * Internal method that writes the strings below node, in order,
+     * to a starting at pos.
+     * @return the position after the last string written.
+     */
+    private static int traverse( Node node, int d, String [ ] a, int pos )
+    {
+        for( int c = 0; c < FANOUT; c++ )
+        {
+            Object child = node.children[ c ];
+            if( child instanceof Node )
+                pos = traverse( (Node) child, d + 1, a, pos );
+            else if( child != null )
+            {
+                Bucket b = (Bucket) child;
+                System.arraycopy( b.items, 0, a, pos, b.size );
+                if( c != 0 )    // digits 0..d are shared, so whole chars up to (d+1)/2 are too
+                    multikeyQuicksort( a, pos, pos + b.size, ( d + 1 ) >>> 1 );
+                pos += b.size;
+            }
+            node.children[ c ] = null;
+        }
+        return pos;
+    }
+
+    /**
+     * Internal multikey quicksort (three-way radix quicksort) of
+     * a[lo..hi), whose strings share their first d chars.
+     */
+    private static void multikeyQuicksort( String [ ] a, int lo, int hi, int d )
+    {
+        while( hi - lo > MKQS_CUTOFF )
+        {
+            int v = median3( charAt( a[ lo ], d ), charAt( a[ ( lo + hi ) >>> 1 ], d ),
+                             charAt( a[ hi - 1 ], d ) );
+
+                // Partition into < v, == v, > v on char d
+            int lt = lo, gt = hi - 1, i = lo;
+            while( i <= gt )
+            {
+                int t = charAt( a[ i ], d );
+                if( t < v )
+                    swap( a, lt++, i++ );
+                else if( t > v )
+                    swap( a, i, gt-- );
+                else
+                    i++;
+            }
+
+            multikeyQuicksort( a, lo, lt, d );
+            multikeyQuicksort( a, gt + 1, hi, d );
+            if( v < 0 )      // The equal strings have all ended
+                return;
+            lo = lt;
+            hi = gt + 1;
+            d++;
+        }
+        insertionSort( a, lo, hi, d );
+    }
+
+    private static int charAt( String s, int d )
+    {
+        return d < s.length( ) ? s.charAt( d ) : -1;
+    }
+
+    private static int median3( int x, int y, int z )
+    {
+        if( x < y )
+            return y < z ? y : x < z ? z : x;
+        return x < z ? x : y < z ? z : y;
+    }
+
+    private static void swap( String [ ] a, int i, int j )
+    {
+        String tmp = a[ i ];
+        a[ i ] = a[ j ];
+        a[ j ] = tmp;
+    }
+
+    /**
+     * Insertion sort of a[lo..hi), comparing from char d.
+     */
+    private static void insertionSort( String [ ] a, int lo, int hi, int d )
+    {
+        for( int p = lo + 1; p < hi; p++ )
+        {
+            String tmp = a[ p ];
+            int j;
+
+            for( j = p; j > lo && less( tmp, a[ j - 1 ], d ); j-- )
+                a[ j ] = a[ j - 1 ];
+            a[ j ] = tmp;
+        }
+    }
+
+    private static boolean less( String s, String t, int d )
+    {
+        int n = Math.min( s.length( ), t.length( ) );
+        for( int i = d; i < n; i++ )
+        {
+            char x = s.charAt( i ), y = t.charAt( i );
+            if( x != y )
+                return x < y;
+        }
+        return s.length( ) < t.length( );
+    }
+
+    // Throughput against the other string sorts; for cache misses,
+    // run under perf stat -e cache-misses with one sort selected by name
+    public static void main( String [ ] args )
+    {
+        final int N = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 1000000;
+        String only = args.length > 0 ? args[ 0 ] : "all";
+        WorkloadGenerator gen = new WorkloadGenerator( 23 );
+
+            // Many copies of a few long strings that share a 4000-char prefix
+        String [ ] longKeys = gen.sharedPrefix( 16, 4000, 1 );
+        String [ ] longDuplicates = new String[ 20000 ];
+        for( int i = 0; i < longDuplicates.length; i++ )
+            longDuplicates[ i ] = longKeys[ i % longKeys.length ];
+
+        String [ ] [ ] inputs = {
+            gen.strings( N, 4, 20 ),
+            gen.sharedPrefix( N, 12, 8 ),
+            gen.strings( N, 10, 10 ),
+            longDuplicates
+        };
+        String [ ] names = { "random 4..20", "shared prefix", "fixed length 10", "long duplicates" };
+
+        for( int w = 0; w < inputs.length; w++ )
+        {
+            String [ ] expected = inputs[ w ].clone( );
+            Arrays.sort( expected );
+            int n = inputs[ w ].length;
+            System.out.println( names[ w ] + ", " + n + " strings:" );
+
+            for( String sorter : new String[ ] { "burstsort", "mergeSort", "keyCacheMergeSort",
+                                                 "americanFlagSort", "countingRadixSort" } )
+            {
+                if( !only.equals( "all" ) && !only.equals( sorter ) )
+                    continue;
+                if( sorter.equals( "countingRadixSort" ) && w != 2 )
+                    continue;    // Fixed-length keys only
+
+                String [ ] a = inputs[ w ].clone( );
+                long start = System.nanoTime( );
+                switch( sorter )
+                {
+                  case "burstsort":         sort( a ); break;
+                  case "mergeSort":         StringSort.mergeSort( a ); break;
+                  case "keyCacheMergeSort": Sort2.keyCacheMergeSort( a ); break;
+                  case "americanFlagSort":  RadixSort.americanFlagSort( a ); break;
+                  default:                  RadixSort.countingRadixSort( a, 10 ); break;
+                }
+                long time = System.nanoTime( ) - start;
+
+                if( !Arrays.equals( a, expected ) )
+                    System.out.println( "Error: " + sorter + " result differs" );
+                System.out.printf( "  %-18s %6d ms  %6.2f M strings/s%n", sorter,
+                                   time / 1000000, n * 1000.0 / time );
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package sorting;
+
+import java.util.Arrays;
+
+/**
+ * Mergesort that makes few passes over main memory.
+ * Sort.mergeSort makes log2(N) passes over the whole array; once the
+ * array is larger than the last-level cache, every pass is a round trip
+ * to DRAM. This sort first sorts blocks small enough to stay in L2
+ * (with Sort's mergesort, so the block's passes hit cache), then merges
+ * FANOUT runs at a time with MultiwayMerge's loser tree. With 2^14-item
+ * blocks and a fanout of 32, 16M items take two merge passes in place
+ * of ten. The sort is stable.
+ */
+public final class CacheAwareMergeSort
+{
+    // References per block: the block and its share of tmpArray fit in a 256KB L2
+    private static final int BLOCK_SIZE = 1 << 14;
+
+    // Runs merged per loser tree; 32 run heads stay in L1
+    private static final int FANOUT = 32;
+
+    private CacheAwareMergeSort( )
+    {
+    }
+
+    /**
+     * Sort with the default block size and fanout.
+     * @param a an array of Comparable items.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void sort( AnyType [ ] a )
+    {
+        sort( a, BLOCK_SIZE, FANOUT );
+    }
+
+    /**
+     * Sort with a given block size and fanout.
+     * @param a an array of Comparable items.
+     * @param blockSize the number of items sorted in cache before merging.
+     * @param fanout the number of runs merged at a time, at least 2.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void sort( AnyType [ ] a, int blockSize, int fanout )
+    {
+        if( blockSize < 1 || fanout < 2 )
+            throw new IllegalArgumentException( "blockSize " + blockSize + ", fanout " + fanout );
+
+        SortMetrics.begin( );
+        try
+        {
+            int n = a.length;
+            @SuppressWarnings( "unchecked" )
+            AnyType [ ] tmpArray = (AnyType[]) new Comparable<?>[ n ];
+            SortMetrics.scratch( (long) n * SortMetrics.REFERENCE_BYTES );
+
+                // Run formation: each block is sorted while it is in cache
+            for( int left = 0; left < n; left += blockSize )
+                Sort.mergeSort( a, tmpArray, left, Math.min( n, left + blockSize ) - 1 );
+
+                // Merge passes, alternating between a and tmpArray;
+                // one loser tree serves every group of every pass
+            MultiwayMerge.RangeMerger<AnyType> merger = null;
+            AnyType [ ] src = a, dst = tmpArray;
+            for( long run = blockSize; run < n; run *= fanout )
+            {
+                if( merger == null )    // The first pass has the most runs per group
+                    merger = new MultiwayMerge.RangeMerger<>( (int) Math.min( fanout, ( n + run - 1 ) / run ) );
+                for( long left = 0; left < n; left += run * fanout )
+                    merger.merge( src, (int) left, run, n, dst );
+                SortMetrics.pass( );
+                SortMetrics.moves( n );
+
+                AnyType [ ] t = src;
+                src = dst;
+                dst = t;
+            }
+
+            if( src != a )
+            {
+                System.arraycopy( src, 0, a, 0, n );
+                SortMetrics.moves( n );
+            }
+        }
+        finally
+        {
+            SortMetrics.end( "cacheAwareMergeSort", a.length );
+        }
+    }
+
+    // Sweep array sizes across the cache sizes: ns per item for each sort
+    public static void main( String [ ] args )
+    {
+        int maxLog = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 22;
+        WorkloadGenerator gen = new WorkloadGenerator( 29 );
+
+        System.out.println( "        N   mergeSort  cacheAware  fanout16  fanout64   (ns/item)" );
+        for( int log = 12; log <= maxLog; log += 2 )
+        {
+            int n = 1 << log;
+            Integer [ ] input = WorkloadGenerator.boxed( gen.uniform( n, Integer.MAX_VALUE ) );
+            int trials = Math.max( 1, ( 1 << 22 ) / n );
+
+            double [ ] nsPerItem = new double[ 4 ];
+            Integer [ ] expected = null;
+            for( int s = 0; s < 4; s++ )
+            {
+                long best = Long.MAX_VALUE;
+                for( int t = 0; t < Math.min( trials, 8 ); t++ )
+                {
+                    Integer [ ] a = input.clone( );
+                    long start = System.nanoTime( );
+                    switch( s )
+                    {
+                      case 0:  Sort.mergeSort( a ); break;
+                      case 1:  sort( a ); break;
+                      case 2:  sort( a, BLOCK_SIZE, 16 ); break;
+                      default: sort( a, BLOCK_SIZE, 64 ); break;
+                    }
+                    best = Math.min( best, System.nanoTime( ) - start );
+
+                    if( expected == null )
+                        expected = a;
+                    else if( !Arrays.equals( a, expected ) )
+                        System.out.println( "Error: results differ for N = " + n );
+                }
+                nsPerItem[ s ] = (double) best / n;
+            }
+            System.out.printf( "%9d  %10.1f  %10.1f  %8.1f  %8.1f%n", n,
+                               nsPerItem[ 0 ], nsPerItem[ 1 ], nsPerItem[ 2 ], nsPerItem[ 3 ] );
+        }
+    }
+}
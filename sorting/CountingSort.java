@@ -0,0 +1,318 @@
+package sorting;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Counting sort for keys in a small range.
+ * One scan finds the minimum and maximum key. When max - min + 1 is at
+ * most four times the number of items (and at most 2^22), a histogram of
+ * the range replaces comparisons: int arrays are rewritten from the
+ * counts, and objects with an int key are distributed stably by key
+ * (key-indexed counting). Wider ranges fall back to RadixSort.radixSort
+ * for int arrays and to a stable LSD radix sort (MultiKeySort) for objects.
+ * The parallel versions build per-chunk histograms concurrently.
+ */
+public final class CountingSort
+{
+    private static final int MAX_RANGE = 1 << 22;
+    private static final int RANGE_FACTOR = 4;
+    private static final int MIN_RANGE = 1 << 10;
+
+    // Below this size the parallel passes do not pay for themselves
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private CountingSort( )
+    {
+    }
+
+    /**
+     * Sort an int array, with counting sort when its range is small.
+     * @param a an array of ints.
+     */
+    public static void sort( int [ ] a )
+    {
+        int [ ] bounds = bounds( a, 0, a.length );
+        long range = range( bounds );
+        if( !countable( range, a.length ) )
+        {
+            RadixSort.radixSort( a );
+            return;
+        }
+
+        SortMetrics.begin( );
+        try
+        {
+            int min = bounds[ 0 ];
+            int [ ] count = new int[ (int) range ];
+            SortMetrics.scratch( range * 4 );
+            for( int x : a )
+                count[ x - min ]++;
+            SortMetrics.pass( );
+
+            int i = 0;
+            for( int v = 0; v < count.length; v++ )
+                for( int c = count[ v ]; c > 0; c-- )
+                    a[ i++ ] = v + min;
+            SortMetrics.moves( a.length );
+        }
+        finally
+        {
+            SortMetrics.end( "countingSort", a.length );
+        }
+    }
+
+    /**
+     * Sort an int array in parallel, with counting sort when
+     * its range is small.
+     * @param a an array of ints.
+     */
+    public static void parallelSort( int [ ] a )
+    {
+        final int n = a.length;
+        int threads = ForkJoinPool.getCommonPoolParallelism( );
+        if( n < PARALLEL_THRESHOLD || threads < 2 )
+        {
+            sort( a );
+            return;
+        }
+
+        final int chunks = 4 * threads;
+        final int chunkSize = ( n + chunks - 1 ) / chunks;
+        int [ ] mins = new int[ chunks ];
+        int [ ] maxs = new int[ chunks ];
+        IntStream.range( 0, chunks ).parallel( ).forEach( c -> {
+            int from = Math.min( n, c * chunkSize ), to = Math.min( n, from + chunkSize );
+            int [ ] bounds = bounds( a, from, to );
+            mins[ c ] = bounds[ 0 ];
+            maxs[ c ] = bounds[ 1 ];
+        } );
+        final int min = Arrays.stream( mins ).min( ).getAsInt( );
+        long range = (long) Arrays.stream( maxs ).max( ).getAsInt( ) - min + 1;
+        if( !countable( range, n ) )
+        {
+            RadixSort.radixSort( a );
+            return;
+        }
+
+            // Per-chunk histograms, summed by value block;
+            // fewer chunks for wide ranges, to bound the chunks x range table
+        final int r = (int) range;
+        final int histograms = Math.max( 1, Math.min( chunks, MAX_RANGE / r ) );
+        final int histogramSize = ( n + histograms - 1 ) / histograms;
+        final int [ ] [ ] counts = new int[ histograms ] [ ];
+        IntStream.range( 0, histograms ).parallel( ).forEach( c -> {
+            int [ ] count = new int[ r ];
+            for( int i = c * histogramSize, end = Math.min( n, i + histogramSize ); i < end; i++ )
+                count[ a[ i ] - min ]++;
+            counts[ c ] = count;
+        } );
+        final int [ ] total = new int[ r ];
+        final int blocks = Math.min( r, chunks );
+        final int blockSize = ( r + blocks - 1 ) / blocks;
+        IntStream.range( 0, blocks ).parallel( ).forEach( b -> {
+            for( int v = b * blockSize, end = Math.min( r, v + blockSize ); v < end; v++ )
+            {
+                int sum = 0;
+                for( int [ ] count : counts )
+                    sum += count[ v ];
+                total[ v ] = sum;
+            }
+        } );
+
+            // Each value block writes its runs from its own start position
+        final int [ ] start = new int[ blocks ];
+        for( int b = 1, sum = 0; b < blocks; b++ )
+        {
+            for( int v = ( b - 1 ) * blockSize, end = Math.min( r, b * blockSize ); v < end; v++ )
+                sum += total[ v ];
+            start[ b ] = sum;
+        }
+        IntStream.range( 0, blocks ).parallel( ).forEach( b -> {
+            int i = start[ b ];
+            for( int v = b * blockSize, end = Math.min( r, v + blockSize ); v < end; v++ )
+            {
+                Arrays.fill( a, i, i + total[ v ], v + min );
+                i += total[ v ];
+            }
+        } );
+    }
+
+    /**
+     * Stable sort of objects by an int key, with key-indexed counting
+     * when the key range is small.
+     * @param a an array of items.
+     * @param key extracts the sort key.
+     */
+    public static <T> void sort( T [ ] a, ToIntFunction<? super T> key )
+    {
+        int n = a.length;
+        int [ ] keys = new int[ n ];
+        int [ ] bounds = { Integer.MAX_VALUE, Integer.MIN_VALUE };
+        for( int i = 0; i < n; i++ )
+        {
+            int k = keys[ i ] = key.applyAsInt( a[ i ] );
+            bounds[ 0 ] = Math.min( bounds[ 0 ], k );
+            bounds[ 1 ] = Math.max( bounds[ 1 ], k );
+        }
+        long range = range( bounds );
+        if( !countable( range, n ) )
+        {
+            new MultiKeySort<T>( ).thenByInt( key ).sort( a );
+            return;
+        }
+
+        SortMetrics.begin( );
+        try
+        {
+            int min = bounds[ 0 ];
+            int [ ] next = new int[ (int) range + 1 ];
+            SortMetrics.scratch( range * 4 + (long) n * ( 4 + SortMetrics.REFERENCE_BYTES ) );
+            for( int k : keys )
+                next[ k - min + 1 ]++;
+            for( int v = 1; v < next.length; v++ )
+                next[ v ] += next[ v - 1 ];
+            SortMetrics.pass( );
+
+            Object [ ] aux = new Object[ n ];
+            for( int i = 0; i < n; i++ )
+                aux[ next[ keys[ i ] - min ]++ ] = a[ i ];
+            System.arraycopy( aux, 0, a, 0, n );
+            SortMetrics.moves( 2L * n );
+        }
+        finally
+        {
+            SortMetrics.end( "countingSort", n );
+        }
+    }
+
+    /**
+     * Stable parallel sort of objects by an int key, with key-indexed
+     * counting when the key range is small.
+     * @param a an array of items.
+     * @param key extracts the sort key.
+     */
+    public static <T> void parallelSort( T [ ] a, ToIntFunction<? super T> key )
+    {
+        final int n = a.length;
+        int threads = ForkJoinPool.getCommonPoolParallelism( );
+        if( n < PARALLEL_THRESHOLD || threads < 2 )
+        {
+            sort( a, key );
+            return;
+        }
+
+        final int [ ] keys = new int[ n ];
+        IntStream.range( 0, n ).parallel( ).forEach( i -> keys[ i ] = key.applyAsInt( a[ i ] ) );
+        IntSummaryStatistics stats = IntStream.of( keys ).parallel( ).summaryStatistics( );
+        final int min = stats.getMin( );
+        long range = (long) stats.getMax( ) - min + 1;
+        if( !countable( range, n ) )
+        {
+            new MultiKeySort<T>( ).thenByInt( key ).sort( a );
+            return;
+        }
+
+            // Fewer chunks for wide ranges, to bound the chunks x range table
+        final int r = (int) range;
+        final int chunks = (int) Math.max( 1, Math.min( 4 * threads, MAX_RANGE / range ) );
+        final int chunkSize = ( n + chunks - 1 ) / chunks;
+        final int [ ] [ ] next = new int[ chunks ] [ ];
+        IntStream.range( 0, chunks ).parallel( ).forEach( c -> {
+            int [ ] count = new int[ r ];
+            for( int i = c * chunkSize, end = Math.min( n, i + chunkSize ); i < end; i++ )
+                count[ keys[ i ] - min ]++;
+            next[ c ] = count;
+        } );
+
+            // Offsets ordered by key, then by chunk, keep the sort stable
+        int sum = 0;
+        for( int v = 0; v < r; v++ )
+            for( int c = 0; c < chunks; c++ )
+            {
+                int count = next[ c ][ v ];
+                next[ c ][ v ] = sum;
+                sum += count;
+            }
+
+        final Object [ ] aux = new Object[ n ];
+        IntStream.range( 0, chunks ).parallel( ).forEach( c -> {
+            int [ ] offset = next[ c ];
+            for( int i = c * chunkSize, end = Math.min( n, i + chunkSize ); i < end; i++ )
+                aux[ offset[ keys[ i ] - min ]++ ] = a[ i ];
+        } );
+        System.arraycopy( aux, 0, a, 0, n );
+    }
+
+    private static boolean countable( long range, int n )
+    {
+        return range <= MAX_RANGE && range <= RANGE_FACTOR * (long) n + MIN_RANGE;
+    }
+
+    /**
+     * Return { min, max } of a[from..to-1], found in one scan, or
+     * { Integer.MAX_VALUE, Integer.MIN_VALUE } if the range is empty.
+     */
+    private static int [ ] bounds( int [ ] a, int from, int to )
+    {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for( int i = from; i < to; i++ )
+        {
+            min = Math.min( min, a[ i ] );
+            max = Math.max( max, a[ i ] );
+        }
+        return new int [ ] { min, max };
+    }
+
+    /**
+     * Return max - min + 1 for bounds { min, max }, or 0 if they are empty.
+     */
+    private static long range( int [ ] bounds )
+    {
+        return bounds[ 0 ] > bounds[ 1 ] ? 0 : (long) bounds[ 1 ] - bounds[ 0 ] + 1;
+    }
+
+    // Compare counting sort with the comparison and radix sorts
+    public static void main( String [ ] args )
+    {
+        final int N = 2000000;
+        WorkloadGenerator gen = new WorkloadGenerator( 17 );
+
+        for( int bound : new int[ ] { 24, 600, N * 5, Integer.MAX_VALUE } )
+        {
+            int [ ] a = gen.uniform( N, bound );
+            int [ ] b = a.clone( );
+            int [ ] c = a.clone( );
+            Integer [ ] boxed = WorkloadGenerator.boxed( a );
+            Integer [ ] boxed2 = boxed.clone( );
+
+            long start = System.nanoTime( );
+            sort( a );
+            long counting = System.nanoTime( ) - start;
+
+            start = System.nanoTime( );
+            parallelSort( b );
+            long parallel = System.nanoTime( ) - start;
+
+            start = System.nanoTime( );
+            RadixSort.radixSort( c );
+            long radix = System.nanoTime( ) - start;
+
+            start = System.nanoTime( );
+            sort( boxed, Integer::intValue );
+            long keyed = System.nanoTime( ) - start;
+
+            start = System.nanoTime( );
+            Sort.mergeSort( boxed2 );
+            long merge = System.nanoTime( ) - start;
+
+            if( !Arrays.equals( a, c ) || !Arrays.equals( b, c ) || !Arrays.equals( boxed, boxed2 ) )
+                System.out.println( "Error: results differ for bound " + bound );
+            System.out.println( "bound " + bound + ": counting " + counting + ", parallel " + parallel
+                                + ", radix " + radix + ", keyed " + keyed + ", mergeSort " + merge );
+        }
+    }
+}
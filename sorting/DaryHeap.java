@@ -0,0 +1,383 @@
+package sorting;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * A d-ary min-heap of int ids with long priorities.
+ * Ids are 0 .. capacity-1, and each id is in the heap at most once, so its
+ * priority can be lowered in place (decreaseKey). Ids and priorities are
+ * kept in parallel primitive arrays, with no boxing and no Comparable calls.
+ * The percolation routines follow percDown in Sort, generalized from
+ * 2 to d children: a wider heap is shallower and scans children that
+ * sit next to each other in memory.
+ */
+public final class DaryHeap
+{
+    private static final int DEFAULT_ARITY = 4;
+
+    // Heaps at least this big are built level by level in parallel
+    private static final int PARALLEL_HEAPIFY = 1 << 16;
+
+    private final int d;
+    private final int [ ] ids;
+    private final long [ ] keys;
+    private final int [ ] pos;   // position of each id in the heap, or -1
+    private int size;
+
+    /**
+     * Construct a 4-ary heap.
+     * @param capacity the number of distinct ids.
+     */
+    public DaryHeap( int capacity )
+    {
+        this( capacity, DEFAULT_ARITY );
+    }
+
+    /**
+     * Construct the heap.
+     * @param capacity the number of distinct ids.
+     * @param arity the number of children per node, at least 2.
+     */
+    public DaryHeap( int capacity, int arity )
+    {
+        if( arity < 2 )
+            throw new IllegalArgumentException( "arity must be at least 2: " + arity );
+        d = arity;
+        ids = new int[ capacity ];
+        keys = new long[ capacity ];
+        pos = new int[ capacity ];
+        Arrays.fill( pos, -1 );
+    }
+
+    public int size( )
+    {
+        return size;
+    }
+
+    public boolean isEmpty( )
+    {
+        return size == 0;
+    }
+
+    /**
+     * Test if id is in the heap.
+     */
+    public boolean contains( int id )
+    {
+        return pos[ id ] >= 0;
+    }
+
+    /**
+     * Return the priority of an id in the heap.
+     * @throws IllegalArgumentException if id is not in the heap.
+     */
+    public long priority( int id )
+    {
+        return keys[ position( id ) ];
+    }
+
+    /**
+     * Insert an id.
+     * @throws IllegalArgumentException if id is already in the heap.
+     */
+    public void push( int id, long priority )
+    {
+        if( pos[ id ] >= 0 )
+            throw new IllegalArgumentException( "id already in heap: " + id );
+        ids[ size ] = id;
+        keys[ size ] = priority;
+        pos[ id ] = size;
+        percUp( size++ );
+    }
+
+    /**
+     * Insert a batch of ids. A batch that is large compared to the heap is
+     * appended and the whole heap rebuilt bottom-up in O(size) time;
+     * heaps of at least 2^16 items are rebuilt in parallel.
+     * The batch is checked before anything is inserted, so on an
+     * exception the heap is unchanged.
+     * @param newIds the ids; none may be in the heap already or repeated.
+     * @param priorities the priority of each id.
+     * @throws IllegalArgumentException if an id is in the heap or repeated,
+     *         or the arrays differ in length.
+     */
+    public void pushAll( int [ ] newIds, long [ ] priorities )
+    {
+        if( newIds.length != priorities.length )
+            throw new IllegalArgumentException( newIds.length + " ids but " + priorities.length + " priorities" );
+        checkNewIds( newIds );
+
+        if( newIds.length < size / 2 )
+        {
+            for( int i = 0; i < newIds.length; i++ )
+                push( newIds[ i ], priorities[ i ] );
+            return;
+        }
+
+        for( int i = 0; i < newIds.length; i++ )
+        {
+            ids[ size ] = newIds[ i ];
+            keys[ size ] = priorities[ i ];
+            pos[ newIds[ i ] ] = size++;
+        }
+        buildHeap( );
+    }
+
+    /**
+     * Internal method that checks that no id is in the heap or repeated.
+     * Ids are marked in pos while they are checked; the marks are always
+     * cleared again.
+     */
+    private void checkNewIds( int [ ] newIds )
+    {
+        final int MARK = -2;
+        int i = 0;
+        try
+        {
+            for( ; i < newIds.length; i++ )
+            {
+                int id = newIds[ i ];
+                if( pos[ id ] == MARK )
+                    throw new IllegalArgumentException( "id repeated in batch: " + id );
+                if( pos[ id ] >= 0 )
+                    throw new IllegalArgumentException( "id already in heap: " + id );
+                pos[ id ] = MARK;
+            }
+        }
+        finally
+        {
+            for( int j = 0; j < i; j++ )
+                pos[ newIds[ j ] ] = -1;
+        }
+    }
+
+    /**
+     * Return the id with the smallest priority.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int peek( )
+    {
+        checkNotEmpty( );
+        return ids[ 0 ];
+    }
+
+    /**
+     * Return the smallest priority.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public long peekPriority( )
+    {
+        checkNotEmpty( );
+        return keys[ 0 ];
+    }
+
+    /**
+     * Remove and return the id with the smallest priority.
+     * @throws IllegalStateException if the heap is empty.
+     */
+    public int pop( )
+    {
+        checkNotEmpty( );
+        int top = ids[ 0 ];
+        pos[ top ] = -1;
+        if( --size > 0 )
+        {
+            ids[ 0 ] = ids[ size ];
+            keys[ 0 ] = keys[ size ];
+            pos[ ids[ 0 ] ] = 0;
+            percDown( 0 );
+        }
+        return top;
+    }
+
+    /**
+     * Remove up to k ids in priority order.
+     * @param out receives the ids; it must hold at least k.
+     * @return the number of ids removed.
+     */
+    public int popK( int k, int [ ] out )
+    {
+        int n = Math.min( k, size );
+        for( int i = 0; i < n; i++ )
+            out[ i ] = pop( );
+        return n;
+    }
+
+    /**
+     * Lower the priority of an id in the heap.
+     * @throws IllegalArgumentException if id is not in the heap
+     *         or priority is greater than its current one.
+     */
+    public void decreaseKey( int id, long priority )
+    {
+        int i = position( id );
+        if( priority > keys[ i ] )
+            throw new IllegalArgumentException( "priority " + priority + " is greater than " + keys[ i ] );
+        keys[ i ] = priority;
+        percUp( i );
+    }
+
+    private int position( int id )
+    {
+        int i = pos[ id ];
+        if( i < 0 )
+            throw new IllegalArgumentException( "id not in heap: " + id );
+        return i;
+    }
+
+    private void checkNotEmpty( )
+    {
+        if( size == 0 )
+            throw new IllegalStateException( "heap is empty" );
+    }
+
+    /**
+     * Internal method that returns the index of the first child of i.
+     */
+    private int firstChild( int i )
+    {
+        return d * i + 1;
+    }
+
+    /**
+     * Internal method that percolates the item at i up to its place.
+     */
+    private void percUp( int i )
+    {
+        int id = ids[ i ];
+        long key = keys[ i ];
+
+        while( i > 0 )
+        {
+            int parent = ( i - 1 ) / d;
+            if( key >= keys[ parent ] )
+                break;
+            move( parent, i );
+            i = parent;
+        }
+        ids[ i ] = id;
+        keys[ i ] = key;
+        pos[ id ] = i;
+    }
+
+    /**
+     * Internal method that percolates the item at i down to its place.
+     */
+    private void percDown( int i )
+    {
+        int id = ids[ i ];
+        long key = keys[ i ];
+
+        for( int child; ( child = firstChild( i ) ) < size; )
+        {
+            int best = child;
+            long bestKey = keys[ child ];
+            for( int c = child + 1, end = Math.min( child + d, size ); c < end; c++ )
+                if( keys[ c ] < bestKey )
+                {
+                    best = c;
+                    bestKey = keys[ c ];
+                }
+
+            if( bestKey >= key )
+                break;
+            move( best, i );
+            i = best;
+        }
+        ids[ i ] = id;
+        keys[ i ] = key;
+        pos[ id ] = i;
+    }
+
+    private void move( int from, int to )
+    {
+        ids[ to ] = ids[ from ];
+        keys[ to ] = keys[ from ];
+        pos[ ids[ to ] ] = to;
+    }
+
+    /**
+     * Internal method that restores heap order bottom-up.
+     * The nodes of one level have disjoint subtrees, so when the heap is
+     * big, each level's nodes are percolated down in parallel.
+     */
+    private void buildHeap( )
+    {
+        if( size < 2 )
+            return;
+
+        int last = ( size - 2 ) / d;   // last node with a child
+        if( size < PARALLEL_HEAPIFY )
+        {
+            for( int i = last; i >= 0; i-- )
+                percDown( i );
+            return;
+        }
+
+            // Walk up the levels: level l holds nodes [start, end)
+        int start = 0, width = 1;
+        while( start + width <= last )
+        {
+            start += width;
+            width *= d;
+        }
+        for( ; ; )
+        {
+            int from = start, to = Math.min( start + width - 1, last );
+            if( to - from >= 1024 )
+                IntStream.rangeClosed( from, to ).parallel( ).forEach( this::percDown );
+            else
+                for( int i = to; i >= from; i-- )
+                    percDown( i );
+
+            if( start == 0 )
+                break;
+            width /= d;
+            start -= width;
+        }
+    }
+
+    // Compare against java.util.PriorityQueue of Long
+    public static void main( String [ ] args )
+    {
+        final int N = 2000000;
+        int [ ] values = new WorkloadGenerator( 42 ).uniform( N, Integer.MAX_VALUE );
+
+        long start = System.nanoTime( );
+        PriorityQueue<Long> pq = new PriorityQueue<>( );
+        for( int v : values )
+            pq.add( (long) v );
+        long prev = Long.MIN_VALUE;
+        while( !pq.isEmpty( ) )
+            prev = pq.poll( );
+        System.out.println( "PriorityQueue time: " + ( System.nanoTime( ) - start ) );
+
+        start = System.nanoTime( );
+        DaryHeap heap = new DaryHeap( N );
+        for( int i = 0; i < N; i++ )
+            heap.push( i, values[ i ] );
+        prev = Long.MIN_VALUE;
+        while( !heap.isEmpty( ) )
+        {
+            long key = heap.peekPriority( );
+            if( key < prev )
+                System.out.println( "Error: out of order" );
+            prev = key;
+            heap.pop( );
+        }
+        System.out.println( "DaryHeap push/pop time: " + ( System.nanoTime( ) - start ) );
+
+        int [ ] all = new int[ N ];
+        long [ ] priorities = new long[ N ];
+        for( int i = 0; i < N; i++ )
+        {
+            all[ i ] = i;
+            priorities[ i ] = values[ i ];
+        }
+        start = System.nanoTime( );
+        heap.pushAll( all, priorities );
+        System.out.println( "DaryHeap pushAll time: " + ( System.nanoTime( ) - start ) );
+    }
+}
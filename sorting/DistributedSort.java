@@ -0,0 +1,424 @@
+package sorting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator for a range-partitioned sort of long keys across
+ * SortWorker processes. The coordinator samples splitters, streams each
+ * key range to its worker in blocks, and reads the sorted ranges back
+ * into the array in order, so the ranges are concatenated, not merged.
+ * Each worker has a fixed pool of block buffers: when a worker falls
+ * behind, its pool runs dry and partitioning waits, which bounds
+ * the memory in flight to QUEUE_DEPTH blocks per worker.
+ */
+public final class DistributedSort implements AutoCloseable
+{
+    private static final int QUEUE_DEPTH = 8;          // blocks in flight per worker
+    private static final int SAMPLES_PER_WORKER = 64;
+    private static final int LOCAL_THRESHOLD = 1 << 16;
+
+    private final List<InetSocketAddress> workers;
+    private final List<Process> processes;
+    private final ExecutorService io = Executors.newCachedThreadPool( r -> {
+        Thread t = new Thread( r, "distributed-sort-io" );
+        t.setDaemon( true );
+        return t;
+    } );
+
+    /**
+     * Construct a coordinator for running workers.
+     * @param workers the addresses of the SortWorker processes.
+     */
+    public DistributedSort( List<InetSocketAddress> workers )
+    {
+        this( workers, new ArrayList<Process>( ) );
+    }
+
+    private DistributedSort( List<InetSocketAddress> workers, List<Process> processes )
+    {
+        if( workers.isEmpty( ) )
+            throw new IllegalArgumentException( "no workers" );
+        this.workers = new ArrayList<>( workers );
+        this.processes = processes;
+    }
+
+    /**
+     * Start worker JVMs on this machine, on the current class path,
+     * and return a coordinator for them. close stops the workers.
+     * @param count the number of workers.
+     */
+    public static DistributedSort launchLocal( int count ) throws IOException
+    {
+        String java = System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty( "java.class.path" );
+        List<Process> processes = new ArrayList<>( );
+        List<InetSocketAddress> addresses = new ArrayList<>( );
+
+        try
+        {
+            for( int i = 0; i < count; i++ )
+            {
+                Process p = new ProcessBuilder( java, "-cp", classPath,
+                                                SortWorker.class.getName( ), "0", "--parent" )
+                        .redirectError( ProcessBuilder.Redirect.INHERIT )
+                        .start( );
+                processes.add( p );
+
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader( p.getInputStream( ), StandardCharsets.UTF_8 ) );
+                String line = reader.readLine( );
+                if( line == null || !line.startsWith( SortWorker.READY ) )
+                    throw new IOException( "worker " + i + " did not start: " + line );
+                int port = Integer.parseInt( line.substring( SortWorker.READY.length( ) ).trim( ) );
+                addresses.add( new InetSocketAddress( "localhost", port ) );
+            }
+        }
+        catch( IOException | RuntimeException e )
+        {
+            for( Process p : processes )
+                p.destroy( );
+            throw e;
+        }
+        return new DistributedSort( addresses, processes );
+    }
+
+    /**
+     * Stop the I/O threads and any workers started by launchLocal.
+     */
+    public void close( )
+    {
+        io.shutdownNow( );
+        for( Process p : processes )
+            p.destroy( );
+    }
+
+    /**
+     * Sort the array across the workers.
+     * Small arrays are sorted locally with RadixSort.radixSort.
+     * @param a an array of long keys.
+     * @throws UncheckedIOException if a worker fails.
+     */
+    public void sort( long [ ] a )
+    {
+        int p = workers.size( );
+        if( a.length < LOCAL_THRESHOLD )
+        {
+            RadixSort.radixSort( a );
+            return;
+        }
+
+        long [ ] splitters = splitters( a, p );
+        List<Socket> sockets = new ArrayList<>( );
+        try
+        {
+            for( InetSocketAddress address : workers )
+            {
+                Socket s = new Socket( address.getHostString( ), address.getPort( ) );
+                s.setTcpNoDelay( true );
+                sockets.add( s );
+            }
+
+            Partition [ ] parts = new Partition[ p ];
+            for( int w = 0; w < p; w++ )
+                parts[ w ] = new Partition( sockets.get( w ) );
+            List<CompletableFuture<Void>> senders = new ArrayList<>( );
+            for( Partition part : parts )
+                senders.add( CompletableFuture.runAsync( part::send, io ) );
+
+                // Range-partition into block buffers; takeBuffer waits while a worker is behind.
+                // END is always posted so no sender is left waiting on an empty queue;
+                // on failure the unsent blocks are dropped first.
+            boolean partitioned = false;
+            try
+            {
+                for( int w = 0; w < p; w++ )
+                    parts[ w ].current = parts[ w ].takeBuffer( senders );
+                for( long x : a )
+                {
+                    Partition part = parts[ bucket( splitters, x ) ];
+                    part.current.keys[ part.current.count++ ] = x;
+                    part.size++;
+                    if( part.current.count == SortWorker.BLOCK_SIZE )
+                    {
+                        part.full.add( part.current );
+                        part.current = part.takeBuffer( senders );
+                    }
+                }
+                for( Partition part : parts )
+                    part.full.add( part.current );
+                partitioned = true;
+            }
+            finally
+            {
+                for( Partition part : parts )
+                {
+                    if( !partitioned )
+                        part.full.clear( );
+                    part.full.offer( Block.END );
+                }
+            }
+
+                // Sorted ranges come back in splitter order
+            List<CompletableFuture<Void>> receivers = new ArrayList<>( );
+            int offset = 0;
+            for( Partition part : parts )
+            {
+                int from = offset;
+                receivers.add( CompletableFuture.runAsync( ( ) -> part.receive( a, from ), io ) );
+                offset += part.size;
+            }
+
+            join( senders );
+            join( receivers );
+        }
+        catch( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        finally
+        {
+            for( Socket s : sockets )
+                closeQuietly( s );
+        }
+    }
+
+    /**
+     * Internal method that picks p - 1 splitters from a sorted sample.
+     */
+    private static long [ ] splitters( long [ ] a, int p )
+    {
+        SplittableRandom random = new SplittableRandom( a.length );
+        long [ ] sample = new long[ p * SAMPLES_PER_WORKER ];
+        for( int i = 0; i < sample.length; i++ )
+            sample[ i ] = a[ random.nextInt( a.length ) ];
+        RadixSort.radixSort( sample );
+
+        long [ ] splitters = new long[ p - 1 ];
+        for( int i = 1; i < p; i++ )
+            splitters[ i - 1 ] = sample[ i * SAMPLES_PER_WORKER ];
+        return splitters;
+    }
+
+    /**
+     * Internal method that returns the number of splitters <= x.
+     */
+    private static int bucket( long [ ] splitters, long x )
+    {
+        int low = 0, high = splitters.length;
+        while( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if( splitters[ mid ] <= x )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static void join( List<CompletableFuture<Void>> futures ) throws IOException
+    {
+        try
+        {
+            CompletableFuture.allOf( futures.toArray( new CompletableFuture<?>[ 0 ] ) ).join( );
+        }
+        catch( CompletionException e )
+        {
+            throw unwrap( e );
+        }
+    }
+
+    /**
+     * Internal method that rethrows the cause of a failed future:
+     * IOExceptions and Errors are thrown, RuntimeExceptions returned.
+     */
+    private static RuntimeException unwrap( CompletionException e ) throws IOException
+    {
+        Throwable cause = e.getCause( );
+        if( cause instanceof UncheckedIOException )
+            throw ( (UncheckedIOException) cause ).getCause( );
+        if( cause instanceof Error )
+            throw (Error) cause;
+        if( cause instanceof RuntimeException )
+            return (RuntimeException) cause;
+        return e;
+    }
+
+    private static void closeQuietly( Socket s )
+    {
+        try
+        {
+            s.close( );
+        }
+        catch( IOException e )
+        {
+            // Nothing more to do
+        }
+    }
+
+    // A buffer of keys bound for one worker
+    private static final class Block
+    {
+        static final Block END = new Block( 0 );
+
+        final long [ ] keys;
+        int count;
+
+        Block( int capacity )
+        {
+            keys = new long[ capacity ];
+        }
+    }
+
+    // The stream of blocks to and from one worker
+    private static final class Partition
+    {
+        final Socket socket;
+        final BlockingQueue<Block> free = new ArrayBlockingQueue<>( QUEUE_DEPTH );
+        final BlockingQueue<Block> full = new ArrayBlockingQueue<>( QUEUE_DEPTH + 1 );
+        Block current;
+        int size;
+
+        Partition( Socket socket )
+        {
+            this.socket = socket;
+            for( int i = 0; i < QUEUE_DEPTH; i++ )
+                free.add( new Block( SortWorker.BLOCK_SIZE ) );
+        }
+
+        /**
+         * Wait for a free buffer, failing with the first failed sender's
+         * cause rather than waiting for the other senders.
+         */
+        Block takeBuffer( List<CompletableFuture<Void>> senders ) throws IOException
+        {
+            try
+            {
+                for( ; ; )
+                {
+                    Block b = free.poll( 100, TimeUnit.MILLISECONDS );
+                    if( b != null )
+                    {
+                        b.count = 0;
+                        return b;
+                    }
+                    for( CompletableFuture<Void> f : senders )
+                        if( f.isCompletedExceptionally( ) )
+                        {
+                            try
+                            {
+                                f.join( );
+                            }
+                            catch( CompletionException e )
+                            {
+                                throw unwrap( e );
+                            }
+                        }
+                }
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new IOException( "interrupted", e );
+            }
+        }
+
+        void send( )
+        {
+            try
+            {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream( socket.getOutputStream( ), 1 << 16 ) );
+                byte [ ] scratch = new byte[ SortWorker.BLOCK_SIZE * 8 ];
+                for( ; ; )
+                {
+                    Block b = full.take( );
+                    if( b == Block.END )
+                        break;
+                    if( b.count > 0 )
+                        SortWorker.writeBlock( out, b.keys, 0, b.count, scratch );
+                    free.add( b );
+                }
+                SortWorker.writeEnd( out );
+                out.flush( );
+            }
+            catch( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new UncheckedIOException( new IOException( "interrupted", e ) );
+            }
+        }
+
+        void receive( long [ ] a, int from )
+        {
+            try
+            {
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream( socket.getInputStream( ), 1 << 16 ) );
+                byte [ ] scratch = new byte[ SortWorker.BLOCK_SIZE * 8 ];
+                int end = from + size;
+                int count;
+                while( ( count = SortWorker.readBlock( in, a, from, scratch ) ) > 0 )
+                    from += count;
+                if( from != end )
+                    throw new IOException( "worker returned " + ( from + size - end ) + " of " + size + " keys" );
+            }
+            catch( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+        }
+    }
+
+    // Sort across local worker JVMs and compare with a local radix sort
+    public static void main( String [ ] args ) throws IOException
+    {
+        int workerCount = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 4;
+        final int N = 4000000;
+        int [ ] values = new WorkloadGenerator( 11 ).uniform( N, Integer.MAX_VALUE );
+        long [ ] a = new long[ N ];
+        for( int i = 0; i < N; i++ )
+            a[ i ] = (long) values[ i ] * values[ ( i + 1 ) % N ];
+        long [ ] b = a.clone( );
+
+        try( DistributedSort sorter = DistributedSort.launchLocal( workerCount ) )
+        {
+            long start = System.nanoTime( );
+            sorter.sort( a );
+            System.out.println( workerCount + " workers: " + ( System.nanoTime( ) - start ) );
+        }
+
+        long start = System.nanoTime( );
+        RadixSort.radixSort( b );
+        System.out.println( "local radixSort: " + ( System.nanoTime( ) - start ) );
+
+        if( !Arrays.equals( a, b ) )
+            System.out.println( "Error: distributed result differs" );
+    }
+}
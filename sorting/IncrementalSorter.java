@@ -0,0 +1,253 @@
+package sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A sorted container that is fed by streaming inserts.
+ * New items are collected in a buffer; a full buffer is sorted with
+ * Sort.mergeSort and becomes a run. Runs are kept in levels, where
+ * level k holds at most one run of about bufferSize * 2^k items.
+ * Two runs on the same level are combined with Sort.merge and carried
+ * to the next level, like a binary counter, so each item takes part
+ * in O(log N) merges over its lifetime.
+ * @param <AnyType> the type of the items, compared with compareTo.
+ */
+public final class IncrementalSorter<AnyType extends Comparable<? super AnyType>>
+{
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    private final AnyType [ ] buffer;
+    private int bufferCount;
+    private final ArrayList<AnyType [ ]> levels = new ArrayList<>( );
+    private AnyType [ ] tmpArray;
+    private int size;
+
+    /**
+     * Construct the container with the default buffer size.
+     */
+    public IncrementalSorter( )
+    {
+        this( DEFAULT_BUFFER_SIZE );
+    }
+
+    /**
+     * Construct the container.
+     * @param bufferSize the number of inserts collected before they are sorted.
+     */
+    @SuppressWarnings( "unchecked" )
+    public IncrementalSorter( int bufferSize )
+    {
+        if( bufferSize < 1 )
+            throw new IllegalArgumentException( "bufferSize must be positive: " + bufferSize );
+        buffer = (AnyType[]) new Comparable<?>[ bufferSize ];
+        tmpArray = (AnyType[]) new Comparable<?>[ 0 ];
+    }
+
+    /**
+     * Insert an item.
+     * @param x the item to insert.
+     */
+    public void add( AnyType x )
+    {
+        buffer[ bufferCount++ ] = x;
+        size++;
+        if( bufferCount == buffer.length )
+            flush( );
+    }
+
+    /**
+     * Insert a batch of items.
+     * @param a the items to insert; a is not changed.
+     */
+    public void addAll( AnyType [ ] a )
+    {
+        for( AnyType x : a )
+            add( x );
+    }
+
+    /**
+     * Return the number of items inserted so far.
+     */
+    public int size( )
+    {
+        return size;
+    }
+
+    /**
+     * Test if the container is empty.
+     */
+    public boolean isEmpty( )
+    {
+        return size == 0;
+    }
+
+    /**
+     * Test if an item equal to x (by compareTo) has been inserted.
+     * @param x the item to search for.
+     */
+    public boolean contains( AnyType x )
+    {
+        for( int i = 0; i < bufferCount; i++ )
+            if( buffer[ i ].compareTo( x ) == 0 )
+                return true;
+
+        for( AnyType [ ] run : levels )
+            if( run != null && Arrays.binarySearch( run, x ) >= 0 )
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Sort the buffered items and carry them into the levels.
+     */
+    public void flush( )
+    {
+        if( bufferCount == 0 )
+            return;
+
+        AnyType [ ] run = Arrays.copyOf( buffer, bufferCount );
+        Arrays.fill( buffer, 0, bufferCount, null );
+        bufferCount = 0;
+
+        Sort.mergeSort( run );
+        carry( run, 0 );
+    }
+
+    /**
+     * Merge everything into a single run and copy it out in sorted order.
+     * Equal items come out in insertion order.
+     * @param a the array to fill if it is big enough.
+     * @return a, or a new array of the same runtime type, holding all items.
+     */
+    public AnyType [ ] toArray( AnyType [ ] a )
+    {
+        flush( );
+
+        AnyType [ ] all = null;
+        for( int k = 0; k < levels.size( ); k++ )
+        {
+            AnyType [ ] run = levels.get( k );
+            if( run == null )
+                continue;
+            levels.set( k, null );
+                // Higher levels hold older items
+            all = all == null ? run : mergeRuns( run, all );
+        }
+
+        if( all == null )
+            return clearTail( a, 0 );
+
+            // Keep the fully merged run as the sorted base, on the
+            // level whose run size covers it, so carry stays balanced
+        int k = 0;
+        while( (long) buffer.length << k < all.length )
+            k++;
+        while( levels.size( ) <= k )
+            levels.add( null );
+        levels.set( k, all );
+
+        if( a.length < size )
+            a = Arrays.copyOf( a, size );
+        System.arraycopy( all, 0, a, 0, size );
+        return clearTail( a, size );
+    }
+
+    /**
+     * Null out the element after the last item, as Collection.toArray does.
+     */
+    private AnyType [ ] clearTail( AnyType [ ] a, int n )
+    {
+        if( a.length > n )
+            a[ n ] = null;
+        return a;
+    }
+
+    /**
+     * Internal method that places a run on level k, merging and carrying
+     * upward while the level is already occupied.
+     */
+    private void carry( AnyType [ ] run, int k )
+    {
+        for( ; ; k++ )
+        {
+            if( k == levels.size( ) )
+            {
+                levels.add( run );
+                return;
+            }
+
+            AnyType [ ] old = levels.get( k );
+            if( old == null )
+            {
+                levels.set( k, run );
+                return;
+            }
+
+            levels.set( k, null );
+            run = mergeRuns( old, run );
+        }
+    }
+
+    /**
+     * Internal method that merges two sorted runs with Sort.merge.
+     * @param older the run inserted first; it wins ties.
+     * @param newer the run inserted later.
+     * @return a new sorted run holding both.
+     */
+    private AnyType [ ] mergeRuns( AnyType [ ] older, AnyType [ ] newer )
+    {
+        AnyType [ ] a = Arrays.copyOf( older, older.length + newer.length );
+        System.arraycopy( newer, 0, a, older.length, newer.length );
+
+        if( tmpArray.length < a.length )
+            tmpArray = Arrays.copyOf( tmpArray, a.length );
+
+        Sort.merge( a, tmpArray, 0, older.length, a.length - 1 );
+        Arrays.fill( tmpArray, 0, a.length, null );
+        return a;
+    }
+
+    // Compare streaming inserts against re-sorting the whole batch
+    public static void main( String [ ] args )
+    {
+        final int BASE = 1000000;
+        final int BATCH = 5000;
+        final int ROUNDS = 20;
+
+        Random rand = new Random( 0 );
+        Integer [ ] base = new Integer[ BASE ];
+        for( int i = 0; i < BASE; i++ )
+            base[ i ] = rand.nextInt( );
+
+        IncrementalSorter<Integer> sorter = new IncrementalSorter<>( );
+        sorter.addAll( base );
+        Integer [ ] all = base.clone( );
+
+        long incremental = 0, resort = 0, start;
+        for( int r = 0; r < ROUNDS; r++ )
+        {
+            Integer [ ] batch = new Integer[ BATCH ];
+            for( int i = 0; i < BATCH; i++ )
+                batch[ i ] = rand.nextInt( );
+
+            start = System.nanoTime( );
+            sorter.addAll( batch );
+            Integer [ ] out = sorter.toArray( new Integer[ 0 ] );
+            incremental += System.nanoTime( ) - start;
+
+            all = Arrays.copyOf( all, all.length + BATCH );
+            System.arraycopy( batch, 0, all, all.length - BATCH, BATCH );
+            start = System.nanoTime( );
+            Sort.mergeSort( all );
+            resort += System.nanoTime( ) - start;
+
+            if( !Arrays.equals( out, all ) )
+                System.out.println( "Error in round " + r );
+        }
+        System.out.println( "Incremental insert time per batch: " + incremental / ROUNDS );
+        System.out.println( "Full re-sort time per batch: " + resort / ROUNDS );
+    }
+}
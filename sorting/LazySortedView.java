@@ -0,0 +1,138 @@
+package sorting;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted view of an array that does only as much sorting as is read.
+ * Uses incremental quicksort: to produce the next item, the unsorted
+ * range in front of it is partitioned with Sort.partition, keeping the
+ * pivot positions on a stack, until the range is small enough to finish
+ * with insertion sort. Reading the first k of N items costs
+ * O(N + k log k) expected comparisons instead of O(N log N).
+ * The array is rearranged in place as the view is read.
+ */
+public final class LazySortedView<AnyType extends Comparable<? super AnyType>>
+    implements Iterable<AnyType>
+{
+    private static final int LAZY_CUTOFF = 16;
+
+    private final AnyType [ ] a;
+    private int sorted;                    // a[0 .. sorted-1] is final
+    private int [ ] pivots = new int[ 32 ];
+    private int top;                       // number of stacked pivots
+
+    /**
+     * Construct the view. Nothing is sorted until items are read.
+     * @param a an array of Comparable items, rearranged as the view is read.
+     */
+    public LazySortedView( AnyType [ ] a )
+    {
+        this.a = a;
+    }
+
+    public int size( )
+    {
+        return a.length;
+    }
+
+    /**
+     * Return the number of leading items already in sorted position.
+     */
+    public int sortedPrefix( )
+    {
+        return sorted;
+    }
+
+    /**
+     * Return the item of the given rank, sorting the array up to it.
+     * @param index the rank (0 is minimum).
+     * @throws IndexOutOfBoundsException if index is out of range.
+     */
+    public AnyType get( int index )
+    {
+        if( index < 0 || index >= a.length )
+            throw new IndexOutOfBoundsException( "index " + index + ", size " + a.length );
+        while( sorted <= index )
+            advance( );
+        return a[ index ];
+    }
+
+    /**
+     * Return an iterator over the items in sorted order.
+     * Each call to next sorts only as far as the item it returns.
+     */
+    public Iterator<AnyType> iterator( )
+    {
+        return new Iterator<AnyType>( )
+        {
+            private int next = 0;
+
+            public boolean hasNext( )
+            {
+                return next < a.length;
+            }
+
+            public AnyType next( )
+            {
+                if( next >= a.length )
+                    throw new NoSuchElementException( );
+                return get( next++ );
+            }
+        };
+    }
+
+    /**
+     * Internal method that extends the sorted prefix.
+     * Partitions the range in front of it until the range is small,
+     * then sorts that range; the pivot that bounds it is final too.
+     */
+    private void advance( )
+    {
+        int end = top == 0 ? a.length : pivots[ top - 1 ];
+        while( end - sorted > LAZY_CUTOFF )
+        {
+            end = Sort.partition( a, sorted, end - 1 );
+            if( top == pivots.length )
+                pivots = Arrays.copyOf( pivots, top * 2 );
+            pivots[ top++ ] = end;
+        }
+
+        Sort.insertionSort( a, sorted, end - 1 );
+        if( top == 0 )
+            sorted = a.length;
+        else
+            sorted = pivots[ --top ] + 1;
+    }
+
+    // Time reading the first few items against a full sort
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        Integer [ ] a = WorkloadGenerator.boxed( new WorkloadGenerator( 7 ).uniform( N, N * 5 ) );
+
+        for( int k : new int[ ] { 10, 100, 1000, 100000, N } )
+        {
+            Integer [ ] b = a.clone( );
+            long start = System.nanoTime( );
+            LazySortedView<Integer> view = new LazySortedView<>( b );
+            Integer prev = null;
+            int count = 0;
+            for( Integer x : view )
+            {
+                if( prev != null && prev.compareTo( x ) > 0 )
+                    System.out.println( "Error: out of order at " + count );
+                prev = x;
+                if( ++count == k )
+                    break;
+            }
+            System.out.println( "first " + k + ": " + ( System.nanoTime( ) - start ) );
+        }
+
+        Integer [ ] b = a.clone( );
+        long start = System.nanoTime( );
+        Sort.quicksort( b );
+        System.out.println( "quicksort: " + ( System.nanoTime( ) - start ) );
+    }
+}
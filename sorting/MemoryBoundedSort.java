@@ -0,0 +1,262 @@
+package sorting;
+
+/**
+ * Sorting under a scratch-memory budget.
+ * Each method picks the fastest engine whose extra memory fits the budget
+ * and returns the strategy it used:
+ * Comparable items use mergeSort with a full buffer, then mergesort with a
+ * buffer cut down to the budget (merges that do not fit are split by
+ * rotations), then a rotation-only mergesort; all of them are stable.
+ * ints and longs use LSD radix sort, then the in-place American flag sort,
+ * then PrimitiveSort. Strings use the LSD countingRadixSort when they all
+ * have one length and are Latin-1, then the American flag sort, whose
+ * count arrays grow with the longest string, then quicksort.
+ * floats and doubles use LSD radix sort, then (floats only) PrimitiveSort,
+ * then an in-place heapsort. Stack space is not counted.
+ */
+public final class MemoryBoundedSort
+{
+    /**
+     * The engine a sort call actually used.
+     */
+    public enum Strategy
+    {
+        MERGESORT, BUFFERED_MERGESORT, IN_PLACE_MERGESORT,
+        LSD_RADIX, IN_PLACE_RADIX, QUICKSORT, HEAPSORT
+    }
+
+    // Count arrays of RadixSort: 3 int passes or 6 long passes of 2^11 + 1 counts
+    private static final long INT_RADIX_COUNT_BYTES = 3L * 2049 * 4;
+    private static final long LONG_RADIX_COUNT_BYTES = 6L * 2049 * 4;
+
+    // Count arrays of the American flag sort: 257 + 256 ints per byte level
+    private static final long INT_FLAG_BYTES = 4L * 513 * 4;
+    private static final long LONG_FLAG_BYTES = 8L * 513 * 4;
+
+    // Count arrays of the String American flag sort: 258 + 257 ints per byte level
+    private static final long STRING_FLAG_LEVEL_BYTES = 515L * 4;
+
+    /**
+     * Stable sort of Comparable items within a scratch budget.
+     * @param a an array of Comparable items.
+     * @param scratchBytes the extra memory the sort may allocate.
+     * @return the strategy used.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Strategy sort( AnyType [ ] a, long scratchBytes )
+    {
+        long references = scratchBytes / SortMetrics.REFERENCE_BYTES;
+        if( references >= a.length )
+        {
+            Sort.mergeSort( a );
+            return Strategy.MERGESORT;
+        }
+
+        Sort.mergeSortBuffered( a, (int) references );
+        return references > 0 ? Strategy.BUFFERED_MERGESORT : Strategy.IN_PLACE_MERGESORT;
+    }
+
+    /**
+     * Sort ints within a scratch budget.
+     * @param a the array.
+     * @param scratchBytes the extra memory the sort may allocate.
+     * @return the strategy used.
+     */
+    public static Strategy sort( int [ ] a, long scratchBytes )
+    {
+        if( scratchBytes >= 4L * a.length + INT_RADIX_COUNT_BYTES )
+        {
+            RadixSort.radixSort( a );
+            return Strategy.LSD_RADIX;
+        }
+        if( scratchBytes >= INT_FLAG_BYTES )
+        {
+            RadixSort.americanFlagSort( a );
+            return Strategy.IN_PLACE_RADIX;
+        }
+        PrimitiveSort.sort( a );
+        return Strategy.QUICKSORT;
+    }
+
+    /**
+     * Sort longs within a scratch budget.
+     * @param a the array.
+     * @param scratchBytes the extra memory the sort may allocate.
+     * @return the strategy used.
+     */
+    public static Strategy sort( long [ ] a, long scratchBytes )
+    {
+        if( scratchBytes >= 8L * a.length + LONG_RADIX_COUNT_BYTES )
+        {
+            RadixSort.radixSort( a );
+            return Strategy.LSD_RADIX;
+        }
+        if( scratchBytes >= LONG_FLAG_BYTES )
+        {
+            RadixSort.americanFlagSort( a );
+            return Strategy.IN_PLACE_RADIX;
+        }
+        PrimitiveSort.sort( a );
+        return Strategy.QUICKSORT;
+    }
+
+    /**
+     * Sort Strings within a scratch budget.
+     * @param a an array of Strings.
+     * @param scratchBytes the extra memory the sort may allocate.
+     * @return the strategy used.
+     */
+    public static Strategy sort( String [ ] a, long scratchBytes )
+    {
+        int minLen = Integer.MAX_VALUE, maxLen = 0;
+        boolean latin1 = true;
+        for( String s : a )
+        {
+            minLen = Math.min( minLen, s.length( ) );
+            maxLen = Math.max( maxLen, s.length( ) );
+            for( int i = 0; latin1 && i < s.length( ); i++ )
+                latin1 = s.charAt( i ) < 256;
+        }
+
+        if( a.length > 0 && minLen == maxLen && latin1
+                && scratchBytes >= (long) a.length * SortMetrics.REFERENCE_BYTES + maxLen * 257L * 4 )
+        {
+            RadixSort.countingRadixSort( a, maxLen );
+            return Strategy.LSD_RADIX;
+        }
+        if( scratchBytes >= ( 2L * maxLen + 1 ) * STRING_FLAG_LEVEL_BYTES )
+        {
+            RadixSort.americanFlagSort( a );
+            return Strategy.IN_PLACE_RADIX;
+        }
+        Sort.quicksort( a );
+        return Strategy.QUICKSORT;
+    }
+
+    /**
+     * Sort floats within a scratch budget, in the order of Arrays.sort.
+     * @param a the array.
+     * @param scratchBytes the extra memory the sort may allocate.
+     * @return the strategy used.
+     */
+    public static Strategy sort( float [ ] a, long scratchBytes )
+    {
+            // Radix keys and their buffer
+        if( scratchBytes >= 8L * a.length + INT_RADIX_COUNT_BYTES )
+        {
+            RadixSort.radixSort( a );
+            return Strategy.LSD_RADIX;
+        }
+        if( scratchBytes >= 4L * a.length )
+        {
+            PrimitiveSort.sort( a );
+            return Strategy.QUICKSORT;
+        }
+        heapsort( a );
+        return Strategy.HEAPSORT;
+    }
+
+    /**
+     * Sort doubles within a scratch budget, in the order of Arrays.sort.
+     * @param a the array.
+     * @param scratchBytes the extra memory the sort may allocate.
+     * @return the strategy used.
+     */
+    public static Strategy sort( double [ ] a, long scratchBytes )
+    {
+            // Radix keys and their buffer
+        if( scratchBytes >= 16L * a.length + LONG_RADIX_COUNT_BYTES )
+        {
+            RadixSort.radixSort( a );
+            return Strategy.LSD_RADIX;
+        }
+        heapsort( a );
+        return Strategy.HEAPSORT;
+    }
+
+    /**
+     * Internal heapsort of floats, ordered by Float.compare.
+     */
+    private static void heapsort( float [ ] a )
+    {
+        for( int i = a.length / 2 - 1; i >= 0; i-- )  /* buildHeap */
+            percDown( a, i, a.length );
+        for( int i = a.length - 1; i > 0; i-- )
+        {
+            float tmp = a[ 0 ];                       /* deleteMax */
+            a[ 0 ] = a[ i ];
+            a[ i ] = tmp;
+            percDown( a, 0, i );
+        }
+    }
+
+    private static void percDown( float [ ] a, int i, int n )
+    {
+        int child;
+        float tmp;
+
+        for( tmp = a[ i ]; 2 * i + 1 < n; i = child )
+        {
+            child = 2 * i + 1;
+            if( child != n - 1 && Float.compare( a[ child ], a[ child + 1 ] ) < 0 )
+                child++;
+            if( Float.compare( tmp, a[ child ] ) < 0 )
+                a[ i ] = a[ child ];
+            else
+                break;
+        }
+        a[ i ] = tmp;
+    }
+
+    /**
+     * Internal heapsort of doubles, ordered by Double.compare.
+     */
+    private static void heapsort( double [ ] a )
+    {
+        for( int i = a.length / 2 - 1; i >= 0; i-- )  /* buildHeap */
+            percDown( a, i, a.length );
+        for( int i = a.length - 1; i > 0; i-- )
+        {
+            double tmp = a[ 0 ];                      /* deleteMax */
+            a[ 0 ] = a[ i ];
+            a[ i ] = tmp;
+            percDown( a, 0, i );
+        }
+    }
+
+    private static void percDown( double [ ] a, int i, int n )
+    {
+        int child;
+        double tmp;
+
+        for( tmp = a[ i ]; 2 * i + 1 < n; i = child )
+        {
+            child = 2 * i + 1;
+            if( child != n - 1 && Double.compare( a[ child ], a[ child + 1 ] ) < 0 )
+                child++;
+            if( Double.compare( tmp, a[ child ] ) < 0 )
+                a[ i ] = a[ child ];
+            else
+                break;
+        }
+        a[ i ] = tmp;
+    }
+
+    // Time the Comparable strategies as the budget shrinks
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        int [ ] data = new WorkloadGenerator( 38 ).uniform( N, N * 5 );
+        long expected = SortVerifier.checksum( WorkloadGenerator.boxed( data ) );
+
+        for( long budget = 4L * N; budget >= 0; budget = budget == 0 ? -1 : budget / 16 )
+        {
+            Integer [ ] a = WorkloadGenerator.boxed( data );
+            long start = System.nanoTime( );
+            Strategy used = sort( a, budget );
+            long time = System.nanoTime( ) - start;
+            SortVerifier.verify( a, expected );
+            System.out.println( "Budget " + budget + " bytes: " + used + " in " + time );
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sort by several columns, each with the fastest method for its type.
+ * Columns are processed most significant first: the rows are sorted on the
+ * first column, then every group of rows that tie on it is sorted on the
+ * next column, and so on. int and long columns are sorted with a stable
+ * LSD radix sort; Comparable columns with Sort.mergeSort. Groups of at most
+ * SMALL_GROUP rows are finished by insertion sort on the remaining columns.
+ * The sort is stable.
+ * @param <T> the type of the rows.
+ */
+public final class MultiKeySort<T>
+{
+    private static final int SMALL_GROUP = 32;
+
+    private static final int DIGIT_BITS = 11;
+    private static final int DIGIT_BUCKETS = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = DIGIT_BUCKETS - 1;
+
+    private final List<Column<T>> columns = new ArrayList<>( );
+
+    /**
+     * Add an int column, ascending.
+     * @param key extracts the column from a row.
+     * @return this sort, to add more columns.
+     */
+    public MultiKeySort<T> thenByInt( ToIntFunction<? super T> key )
+    {
+        columns.add( new RadixColumn<T>( 32 )
+        {
+            long radixKey( T x )
+            {
+                return ( key.applyAsInt( x ) ^ Integer.MIN_VALUE ) & 0xFFFFFFFFL;
+            }
+
+            int compare( T x, T y )
+            {
+                return Integer.compare( key.applyAsInt( x ), key.applyAsInt( y ) );
+            }
+        } );
+        return this;
+    }
+
+    /**
+     * Add a long column, ascending.
+     * @param key extracts the column from a row.
+     * @return this sort, to add more columns.
+     */
+    public MultiKeySort<T> thenByLong( ToLongFunction<? super T> key )
+    {
+        columns.add( new RadixColumn<T>( 64 )
+        {
+            long radixKey( T x )
+            {
+                return key.applyAsLong( x ) ^ Long.MIN_VALUE;
+            }
+
+            int compare( T x, T y )
+            {
+                return Long.compare( key.applyAsLong( x ), key.applyAsLong( y ) );
+            }
+        } );
+        return this;
+    }
+
+    /**
+     * Add a Comparable column, ascending by compareTo.
+     * @param key extracts the column from a row.
+     * @return this sort, to add more columns.
+     */
+    public <U extends Comparable<? super U>>
+    MultiKeySort<T> thenBy( Function<? super T, ? extends U> key )
+    {
+        columns.add( new ComparableColumn<T, U>( key ) );
+        return this;
+    }
+
+    /**
+     * Sort the rows by all columns.
+     * @param rows the rows.
+     */
+    public void sort( T [ ] rows )
+    {
+        sort( rows, 0, rows.length, 0 );
+    }
+
+    /**
+     * Internal method that sorts rows[lo..hi), which tie on
+     * every column before col, on the columns from col on.
+     */
+    private void sort( T [ ] rows, int lo, int hi, int col )
+    {
+        if( hi - lo < 2 || col == columns.size( ) )
+            return;
+        if( hi - lo <= SMALL_GROUP )
+        {
+            insertionSort( rows, lo, hi, col );
+            return;
+        }
+
+        Column<T> column = columns.get( col );
+        column.sortRange( rows, lo, hi );
+
+            // Sort each group of ties on the next column
+        int start = lo;
+        for( int i = lo + 1; i <= hi; i++ )
+            if( i == hi || column.compare( rows[ start ], rows[ i ] ) != 0 )
+            {
+                sort( rows, start, i, col + 1 );
+                start = i;
+            }
+    }
+
+    /**
+     * Compare two rows on the columns from col on.
+     */
+    private int compareFrom( T x, T y, int col )
+    {
+        for( ; col < columns.size( ); col++ )
+        {
+            int cmp = columns.get( col ).compare( x, y );
+            if( cmp != 0 )
+                return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * Insertion sort of rows[lo..hi) on the columns from col on.
+     */
+    private void insertionSort( T [ ] rows, int lo, int hi, int col )
+    {
+        for( int p = lo + 1; p < hi; p++ )
+        {
+            T tmp = rows[ p ];
+            int j;
+
+            for( j = p; j > lo && compareFrom( tmp, rows[ j - 1 ], col ) < 0; j-- )
+                rows[ j ] = rows[ j - 1 ];
+            rows[ j ] = tmp;
+        }
+    }
+
+    /**
+     * One column of the sort.
+     */
+    private static abstract class Column<T>
+    {
+        abstract int compare( T x, T y );
+
+        /**
+         * Stable sort of rows[lo..hi) on this column alone.
+         */
+        abstract void sortRange( T [ ] rows, int lo, int hi );
+    }
+
+    /**
+     * An int or long column, sorted with a stable LSD radix sort.
+     */
+    private static abstract class RadixColumn<T> extends Column<T>
+    {
+        private final int keyBits;
+
+        /**
+         * @param keyBits the width of the radix key: 32 or 64.
+         */
+        RadixColumn( int keyBits )
+        {
+            this.keyBits = keyBits;
+        }
+
+        /**
+         * Key whose unsigned order is the column order;
+         * only its low keyBits bits may be set.
+         */
+        abstract long radixKey( T x );
+
+        /**
+         * LSD radix sort of rows[lo..hi), moving each row along with its key.
+         * Only the digits of the key width are examined, and a pass is
+         * skipped when every key has the same digit.
+         */
+        @SuppressWarnings( "unchecked" )
+        void sortRange( T [ ] rows, int lo, int hi )
+        {
+            int n = hi - lo;
+            long [ ] keys = new long[ n ];
+            for( int i = 0; i < n; i++ )
+                keys[ i ] = radixKey( rows[ lo + i ] );
+
+            long [ ] inKeys = keys, outKeys = new long[ n ];
+            T [ ] in = Arrays.copyOfRange( rows, lo, hi );
+            T [ ] out = (T[]) new Object[ n ];
+            int [ ] count = new int[ DIGIT_BUCKETS + 1 ];
+
+            for( int shift = 0; shift < keyBits; shift += DIGIT_BITS )
+            {
+                Arrays.fill( count, 0 );
+                for( int i = 0; i < n; i++ )
+                    count[ (int) ( inKeys[ i ] >>> shift & DIGIT_MASK ) + 1 ]++;
+
+                if( count[ (int) ( inKeys[ 0 ] >>> shift & DIGIT_MASK ) + 1 ] == n )
+                    continue;
+
+                for( int b = 1; b <= DIGIT_BUCKETS; b++ )
+                    count[ b ] += count[ b - 1 ];
+
+                for( int i = 0; i < n; i++ )
+                {
+                    int pos = count[ (int) ( inKeys[ i ] >>> shift & DIGIT_MASK ) ]++;
+                    outKeys[ pos ] = inKeys[ i ];
+                    out[ pos ] = in[ i ];
+                }
+
+                  // swap in and out roles
+                long [ ] tmpKeys = inKeys;
+                inKeys = outKeys;
+                outKeys = tmpKeys;
+                T [ ] tmp = in;
+                in = out;
+                out = tmp;
+            }
+
+            System.arraycopy( in, 0, rows, lo, n );
+        }
+    }
+
+    /**
+     * A column of Comparable values, sorted with Sort.mergeSort.
+     */
+    private static final class ComparableColumn<T, U extends Comparable<? super U>> extends Column<T>
+    {
+        private final Function<? super T, ? extends U> key;
+
+        ComparableColumn( Function<? super T, ? extends U> key )
+        {
+            this.key = key;
+        }
+
+        int compare( T x, T y )
+        {
+            return key.apply( x ).compareTo( key.apply( y ) );
+        }
+
+        @SuppressWarnings( "unchecked" )
+        void sortRange( T [ ] rows, int lo, int hi )
+        {
+            Keyed<T, U> [ ] entries = (Keyed<T, U>[]) new Keyed<?, ?>[ hi - lo ];
+            for( int i = lo; i < hi; i++ )
+                entries[ i - lo ] = new Keyed<T, U>( key.apply( rows[ i ] ), rows[ i ] );
+
+            Sort.mergeSort( entries );
+
+            for( int i = lo; i < hi; i++ )
+                rows[ i ] = entries[ i - lo ].row;
+        }
+    }
+
+    /**
+     * A row paired with its extracted key, so the key is computed once.
+     */
+    private static final class Keyed<T, U extends Comparable<? super U>> implements Comparable<Keyed<T, U>>
+    {
+        final U key;
+        final T row;
+
+        Keyed( U key, T row )
+        {
+            this.key = key;
+            this.row = row;
+        }
+
+        public int compareTo( Keyed<T, U> other )
+        {
+            return key.compareTo( other.key );
+        }
+    }
+
+    /**
+     * A report row with a Comparable composite key, as sorted before.
+     */
+    private static final class Row implements Comparable<Row>
+    {
+        final int region;
+        final long date;
+        final String amount;
+
+        Row( int region, long date, String amount )
+        {
+            this.region = region;
+            this.date = date;
+            this.amount = amount;
+        }
+
+        public int compareTo( Row other )
+        {
+            int cmp = Integer.compare( region, other.region );
+            if( cmp == 0 )
+                cmp = Long.compare( date, other.date );
+            if( cmp == 0 )
+                cmp = amount.compareTo( other.amount );
+            return cmp;
+        }
+    }
+
+    // Compare against Sort.mergeSort on the composite key
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        WorkloadGenerator gen = new WorkloadGenerator( 40 );
+        int [ ] regions = gen.uniform( N, 50 );
+        int [ ] days = gen.uniform( N, 3650 );
+        String [ ] amounts = gen.strings( N, 3, 8 );
+
+        Row [ ] rows = new Row[ N ];
+        for( int i = 0; i < N; i++ )
+            rows[ i ] = new Row( regions[ i ], 1500000000000L + days[ i ] * 86400000L, amounts[ i ] );
+        Row [ ] copy = rows.clone( );
+
+        long start = System.nanoTime( );
+        Sort.mergeSort( copy );
+        System.out.println( "Sort.mergeSort time: " + ( System.nanoTime( ) - start ) );
+
+        MultiKeySort<Row> byColumns = new MultiKeySort<Row>( )
+            .thenByInt( r -> r.region )
+            .thenByLong( r -> r.date )
+            .thenBy( r -> r.amount );
+        start = System.nanoTime( );
+        byColumns.sort( rows );
+        System.out.println( "MultiKeySort time: " + ( System.nanoTime( ) - start ) );
+
+        if( !Arrays.equals( rows, copy ) )
+            System.out.println( "Error: results differ" );
+    }
+}
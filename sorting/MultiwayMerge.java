@@ -0,0 +1,439 @@
+package sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * K-way merging of sorted inputs with a loser tree (tournament tree).
+ * Each output item costs about log2(K) comparisons.
+ * Equal items are taken from the input with the smallest index first,
+ * so the merge is stable.
+ */
+public final class MultiwayMerge
+{
+    /**
+     * Merge sorted arrays into out.
+     * @param runs the sorted input arrays.
+     * @param out the output array; it must hold the items of all runs.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void merge( AnyType [ ] [ ] runs, AnyType [ ] out )
+    {
+        int [ ] from = new int[ runs.length ];
+        int [ ] to = new int[ runs.length ];
+        for( int i = 0; i < runs.length; i++ )
+            to[ i ] = runs[ i ].length;
+
+        checkLength( runs, out );
+        new ArrayTree<>( runs, from, to ).mergeInto( out, 0 );
+    }
+
+    /**
+     * Merge sorted arrays into out, splitting the output into disjoint
+     * ranges that are filled in parallel. The split positions are found
+     * by co-ranking, so no item is moved twice.
+     * @param runs the sorted input arrays.
+     * @param out the output array; it must hold the items of all runs.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void parallelMerge( AnyType [ ] [ ] runs, AnyType [ ] out )
+    {
+        checkLength( runs, out );
+
+        int total = out.length;
+        int parts = Math.min( ForkJoinPool.getCommonPoolParallelism( ), total / MIN_PART_SIZE );
+        if( parts <= 1 )
+        {
+            merge( runs, out );
+            return;
+        }
+
+        int [ ] [ ] cuts = new int[ parts + 1 ] [ ];
+        for( int p = 0; p <= parts; p++ )
+            cuts[ p ] = coRank( runs, (int) ( (long) total * p / parts ) );
+
+        List<RecursiveAction> tasks = new ArrayList<>( parts );
+        for( int p = 0; p < parts; p++ )
+        {
+            final int [ ] from = cuts[ p ];
+            final int [ ] to = cuts[ p + 1 ];
+            final int outPos = (int) ( (long) total * p / parts );
+            final AnyType [ ] [ ] in = runs;
+            final AnyType [ ] dest = out;
+            tasks.add( new RecursiveAction( )
+            {
+                protected void compute( )
+                {
+                    new ArrayTree<>( in, from, to ).mergeInto( dest, outPos );
+                }
+            } );
+        }
+        ForkJoinPool.commonPool( ).invoke( new RecursiveAction( )
+        {
+            protected void compute( )
+            {
+                invokeAll( tasks );
+            }
+        } );
+    }
+
+    /**
+     * Merge sorted iterators lazily.
+     * @param inputs the sorted inputs.
+     * @return an iterator over all items in sorted order.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Iterator<AnyType> merge( List<? extends Iterator<? extends AnyType>> inputs )
+    {
+        return new IteratorTree<>( inputs );
+    }
+
+    /**
+     * Merger for consecutive sorted ranges of one array, up to k at a
+     * time. The loser tree and its arrays are allocated once and reused
+     * for every merge, so a pass of many small merges allocates nothing.
+     */
+    static final class RangeMerger<AnyType extends Comparable<? super AnyType>>
+    {
+        private final AnyType [ ] [ ] runs;
+        private final int [ ] from;
+        private final int [ ] to;
+        private final ArrayTree<AnyType> tree;
+
+        @SuppressWarnings( "unchecked" )
+        RangeMerger( int k )
+        {
+            runs = (AnyType[][]) new Comparable<?>[ k ] [ ];
+            from = new int[ k ];
+            to = new int[ k ];
+            tree = new ArrayTree<>( runs, from, to );
+        }
+
+        /**
+         * Merge the runs a[ left .. left+run ), a[ left+run .. left+2run ), ...
+         * that start before n, at most k of them, into out from position left.
+         * @param a the array holding the runs.
+         * @param left the start of the first run.
+         * @param run the length of each run; the last may be cut short by n.
+         * @param n the end of the last run.
+         * @param out the output array.
+         */
+        void merge( AnyType [ ] a, int left, long run, int n, AnyType [ ] out )
+        {
+            Arrays.fill( runs, a );
+            for( int i = 0; i < from.length; i++ )
+            {
+                long start = left + i * run;
+                from[ i ] = (int) Math.min( n, start );
+                to[ i ] = (int) Math.min( n, start + run );
+            }
+            tree.reset( from, to );
+            tree.mergeInto( out, left );
+        }
+    }
+
+    // Below this many output items per task, parallel merging does not pay
+    private static final int MIN_PART_SIZE = 1 << 16;
+
+    private static void checkLength( Object [ ] [ ] runs, Object [ ] out )
+    {
+        long total = 0;
+        for( Object [ ] run : runs )
+            total += run.length;
+        if( total != out.length )
+            throw new IllegalArgumentException( "output holds " + out.length + " items, runs hold " + total );
+    }
+
+    /**
+     * Co-ranking: find, for each run, how many of its items come before
+     * output position rank. Items are ordered by value, then run index.
+     * Each step halves the largest remaining search range.
+     * @param runs the sorted input arrays.
+     * @param rank the output position.
+     * @return the cut position in each run; the cuts add up to rank.
+     */
+    static <AnyType extends Comparable<? super AnyType>>
+    int [ ] coRank( AnyType [ ] [ ] runs, int rank )
+    {
+        int k = runs.length;
+        int [ ] lo = new int[ k ];
+        int [ ] hi = new int[ k ];
+        int [ ] cnt = new int[ k ];
+        for( int i = 0; i < k; i++ )
+            hi[ i ] = runs[ i ].length;
+
+        for( ; ; )
+        {
+            int j = -1;
+            for( int i = 0; i < k; i++ )
+                if( lo[ i ] < hi[ i ] && ( j < 0 || hi[ i ] - lo[ i ] > hi[ j ] - lo[ j ] ) )
+                    j = i;
+            if( j < 0 )
+                return lo;
+
+            int p = ( lo[ j ] + hi[ j ] ) >>> 1;
+            AnyType pivot = runs[ j ][ p ];
+
+                // Count the items before the pivot in each run
+            long before = 0;
+            for( int i = 0; i < k; i++ )
+            {
+                if( i == j )
+                    cnt[ i ] = p;
+                else
+                    cnt[ i ] = bound( runs[ i ], lo[ i ], hi[ i ], pivot, i < j );
+                before += cnt[ i ];
+            }
+
+            if( before < rank )
+            {
+                for( int i = 0; i < k; i++ )
+                    lo[ i ] = Math.max( lo[ i ], cnt[ i ] );
+                lo[ j ] = p + 1;
+            }
+            else
+                for( int i = 0; i < k; i++ )
+                    hi[ i ] = Math.min( hi[ i ], cnt[ i ] );
+        }
+    }
+
+    /**
+     * Binary search in a[low..high) for the first item greater than x,
+     * or, when inclusive is false, the first item not less than x.
+     * Positions outside [low, high) are already known and not searched.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    int bound( AnyType [ ] a, int low, int high, AnyType x, boolean inclusive )
+    {
+        while( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            int cmp = a[ mid ].compareTo( x );
+            if( cmp < 0 || ( inclusive && cmp == 0 ) )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Loser tree over K inputs. tree[ 0 ] is the current winner and
+     * tree[ 1 .. K-1 ] hold the loser of the match played at that node;
+     * the leaf for input i is node K + i.
+     */
+    private static abstract class LoserTree<AnyType extends Comparable<? super AnyType>>
+    {
+        protected final int k;
+        protected final AnyType [ ] heads;
+        protected final boolean [ ] live;
+        private final int [ ] tree;
+        private final int [ ] winner;
+
+        @SuppressWarnings( "unchecked" )
+        LoserTree( int k )
+        {
+            this.k = k;
+            heads = (AnyType[]) new Comparable<?>[ k ];
+            live = new boolean[ k ];
+            tree = new int[ Math.max( k, 1 ) ];
+            winner = new int[ 2 * k ];
+        }
+
+        /**
+         * Load the next item of input i into heads[ i ],
+         * or clear live[ i ] if it is exhausted.
+         */
+        protected abstract void advance( int i );
+
+        /**
+         * Fill the heads and play the first tournament.
+         */
+        protected void build( )
+        {
+            for( int i = 0; i < k; i++ )
+                advance( i );
+
+            if( k == 0 )
+                return;
+
+            for( int i = 0; i < k; i++ )
+                winner[ k + i ] = i;
+            for( int n = k - 1; n >= 1; n-- )
+            {
+                int l = winner[ 2 * n ], r = winner[ 2 * n + 1 ];
+                if( beats( l, r ) )
+                {
+                    winner[ n ] = l;
+                    tree[ n ] = r;
+                }
+                else
+                {
+                    winner[ n ] = r;
+                    tree[ n ] = l;
+                }
+            }
+            tree[ 0 ] = k == 1 ? 0 : winner[ 1 ];
+        }
+
+        /**
+         * Test if the head of input i comes before the head of input j.
+         */
+        private boolean beats( int i, int j )
+        {
+            if( !live[ i ] )
+                return false;
+            if( !live[ j ] )
+                return true;
+            int cmp = heads[ i ].compareTo( heads[ j ] );
+            return cmp < 0 || ( cmp == 0 && i < j );
+        }
+
+        protected boolean hasNext( )
+        {
+            return k > 0 && live[ tree[ 0 ] ];
+        }
+
+        /**
+         * Remove and return the smallest head, then replay its path.
+         */
+        protected AnyType next( )
+        {
+            int w = tree[ 0 ];
+            AnyType result = heads[ w ];
+            advance( w );
+
+            for( int n = ( w + k ) >>> 1; n >= 1; n >>>= 1 )
+                if( beats( tree[ n ], w ) )
+                {
+                    int tmp = tree[ n ];
+                    tree[ n ] = w;
+                    w = tmp;
+                }
+            tree[ 0 ] = w;
+            return result;
+        }
+    }
+
+    /**
+     * Loser tree over the ranges runs[ i ][ from[ i ] .. to[ i ] ).
+     */
+    private static final class ArrayTree<AnyType extends Comparable<? super AnyType>>
+        extends LoserTree<AnyType>
+    {
+        private final AnyType [ ] [ ] runs;
+        private final int [ ] pos;
+        private final int [ ] end;
+
+        ArrayTree( AnyType [ ] [ ] runs, int [ ] from, int [ ] to )
+        {
+            super( runs.length );
+            this.runs = runs;
+            pos = from.clone( );
+            end = to.clone( );
+            build( );
+        }
+
+        /**
+         * Start a new merge of the ranges [ from[ i ], to[ i ] ) of the
+         * same runs arrays, whose contents may have changed.
+         */
+        void reset( int [ ] from, int [ ] to )
+        {
+            System.arraycopy( from, 0, pos, 0, k );
+            System.arraycopy( to, 0, end, 0, k );
+            build( );
+        }
+
+        protected void advance( int i )
+        {
+            live[ i ] = pos[ i ] < end[ i ];
+            heads[ i ] = live[ i ] ? runs[ i ][ pos[ i ]++ ] : null;
+        }
+
+        void mergeInto( AnyType [ ] out, int outPos )
+        {
+            while( hasNext( ) )
+                out[ outPos++ ] = next( );
+        }
+    }
+
+    /**
+     * Loser tree over iterators, itself exposed as an iterator.
+     */
+    private static final class IteratorTree<AnyType extends Comparable<? super AnyType>>
+        extends LoserTree<AnyType> implements Iterator<AnyType>
+    {
+        private final List<? extends Iterator<? extends AnyType>> inputs;
+
+        IteratorTree( List<? extends Iterator<? extends AnyType>> inputs )
+        {
+            super( inputs.size( ) );
+            this.inputs = inputs;
+            build( );
+        }
+
+        protected void advance( int i )
+        {
+            Iterator<? extends AnyType> it = inputs.get( i );
+            live[ i ] = it.hasNext( );
+            heads[ i ] = live[ i ] ? it.next( ) : null;
+        }
+
+        public boolean hasNext( )
+        {
+            return super.hasNext( );
+        }
+
+        public AnyType next( )
+        {
+            if( !hasNext( ) )
+                throw new NoSuchElementException( );
+            return super.next( );
+        }
+
+        public void remove( )
+        {
+            throw new UnsupportedOperationException( );
+        }
+    }
+
+    // Compare the loser tree merge, the parallel merge and a full re-sort
+    public static void main( String [ ] args )
+    {
+        final int K = 16;
+        final int RUN_LENGTH = 250000;
+
+        Integer [ ] [ ] runs = new Integer[ K ] [ RUN_LENGTH ];
+        Integer [ ] all = new Integer[ K * RUN_LENGTH ];
+        for( int i = 0; i < K; i++ )
+        {
+            Sort.Random_Intgenerator( runs[ i ] );
+            Sort.mergeSort( runs[ i ] );
+            System.arraycopy( runs[ i ], 0, all, i * RUN_LENGTH, RUN_LENGTH );
+        }
+
+        long start = System.nanoTime( );
+        Sort.mergeSort( all );
+        System.out.println( "Full mergesort time: " + ( System.nanoTime( ) - start ) );
+
+        Integer [ ] out = new Integer[ all.length ];
+        start = System.nanoTime( );
+        merge( runs, out );
+        System.out.println( "Loser tree merge time: " + ( System.nanoTime( ) - start ) );
+        if( !Arrays.equals( out, all ) )
+            System.out.println( "Error in merge" );
+
+        out = new Integer[ all.length ];
+        start = System.nanoTime( );
+        parallelMerge( runs, out );
+        System.out.println( "Parallel merge time: " + ( System.nanoTime( ) - start ) );
+        if( !Arrays.equals( out, all ) )
+            System.out.println( "Error in parallelMerge" );
+    }
+}
@@ -0,0 +1,386 @@
+package sorting;
+
+import java.util.Arrays;
+
+/**
+ * Quicksort kernels for int, long and float arrays written so that their
+ * inner loops have no data-dependent branches:
+ * partitioning is a branchless Lomuto scan (the unconditional swap and
+ * a conditional increment compile to moves and a setcc), and subarrays of
+ * up to 16 items are finished with Batcher's odd-even merge sorting network
+ * built from min/max compare-exchanges. Recursion deeper than 2 log N
+ * falls back to heapsort, so the worst case stays O(N log N).
+ */
+public final class PrimitiveSort
+{
+    private static final int NETWORK_SIZE = 16;
+
+    // Comparator pairs of the odd-even merge sorting network for 16 items
+    private static final int [ ] NETWORK = oddEvenMergeNetwork( NETWORK_SIZE );
+
+    /**
+     * Sort an array of ints.
+     * @param a the array.
+     */
+    public static void sort( int [ ] a )
+    {
+        quicksort( a, 0, a.length - 1, 2 * log2( a.length ) );
+    }
+
+    /**
+     * Sort an array of longs.
+     * @param a the array.
+     */
+    public static void sort( long [ ] a )
+    {
+        quicksort( a, 0, a.length - 1, 2 * log2( a.length ) );
+    }
+
+    /**
+     * Sort an array of floats in the order of Arrays.sort:
+     * -0.0f before 0.0f and NaN last.
+     * The floats are mapped to ints that compare the same way,
+     * sorted as ints, and mapped back.
+     * @param a the array.
+     */
+    public static void sort( float [ ] a )
+    {
+        int [ ] keys = new int[ a.length ];
+        for( int i = 0; i < a.length; i++ )
+        {
+            int bits = Float.floatToIntBits( a[ i ] );
+            keys[ i ] = bits ^ ( ( bits >> 31 ) & Integer.MAX_VALUE );
+        }
+
+        sort( keys );
+
+        for( int i = 0; i < a.length; i++ )
+        {
+            int key = keys[ i ];
+            a[ i ] = Float.intBitsToFloat( key ^ ( ( key >> 31 ) & Integer.MAX_VALUE ) );
+        }
+    }
+
+    /**
+     * Internal quicksort method that makes recursive calls.
+     * @param a the array.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     * @param depth the number of levels left before switching to heapsort.
+     */
+    private static void quicksort( int [ ] a, int left, int right, int depth )
+    {
+        while( right - left >= NETWORK_SIZE )
+        {
+            if( depth-- == 0 )
+            {
+                heapsort( a, left, right );
+                return;
+            }
+
+            int p = partition( a, left, right );
+
+                // If nothing was smaller than the pivot, split off the items
+                // equal to it so runs of duplicates cannot go quadratic
+            int q = p;
+            if( p == left )
+                q = partitionEqual( a, left + 1, right, a[ left ] ) - 1;
+
+                // Recurse into the smaller side, loop on the larger
+            if( p - left < right - q )
+            {
+                quicksort( a, left, p - 1, depth );
+                left = q + 1;
+            }
+            else
+            {
+                quicksort( a, q + 1, right, depth );
+                right = p - 1;
+            }
+        }
+        network( a, left, right );
+    }
+
+    /**
+     * Partition a[left..right] around the median of three.
+     * @return the final position of the pivot.
+     */
+    private static int partition( int [ ] a, int left, int right )
+    {
+        int center = ( left + right ) >>> 1;
+        compareExchange( a, left, center );
+        compareExchange( a, center, right );
+        compareExchange( a, left, center );
+
+            // Place pivot at position right
+        swap( a, center, right );
+        int pivot = a[ right ];
+
+        int i = left;
+        for( int j = left; j < right; j++ )
+        {
+            int x = a[ j ];
+            a[ j ] = a[ i ];
+            a[ i ] = x;
+            i += x < pivot ? 1 : 0;
+        }
+
+        swap( a, i, right );   // Restore pivot
+        return i;
+    }
+
+    /**
+     * Move the items of a[left..right] equal to pivot to the front;
+     * all items must be at least pivot.
+     * @return the index of the first item greater than pivot.
+     */
+    private static int partitionEqual( int [ ] a, int left, int right, int pivot )
+    {
+        int i = left;
+        for( int j = left; j <= right; j++ )
+        {
+            int x = a[ j ];
+            a[ j ] = a[ i ];
+            a[ i ] = x;
+            i += x <= pivot ? 1 : 0;
+        }
+        return i;
+    }
+
+    /**
+     * Sort a[left..right], at most 16 items, with the sorting network.
+     * Missing items act as +infinity, so comparators that touch them are skipped.
+     */
+    private static void network( int [ ] a, int left, int right )
+    {
+        int n = right - left + 1;
+        for( int c = 0; c < NETWORK.length; c += 2 )
+            if( NETWORK[ c + 1 ] < n )
+                compareExchange( a, left + NETWORK[ c ], left + NETWORK[ c + 1 ] );
+    }
+
+    private static void compareExchange( int [ ] a, int i, int j )
+    {
+        int x = a[ i ], y = a[ j ];
+        a[ i ] = Math.min( x, y );
+        a[ j ] = Math.max( x, y );
+    }
+
+    private static void swap( int [ ] a, int i, int j )
+    {
+        int tmp = a[ i ];
+        a[ i ] = a[ j ];
+        a[ j ] = tmp;
+    }
+
+    /**
+     * Heapsort of a[left..right], used when quicksort goes too deep.
+     */
+    private static void heapsort( int [ ] a, int left, int right )
+    {
+        int n = right - left + 1;
+        for( int i = n / 2 - 1; i >= 0; i-- )  /* buildHeap */
+            percDown( a, left, i, n );
+        for( int i = n - 1; i > 0; i-- )
+        {
+            swap( a, left, left + i );          /* deleteMax */
+            percDown( a, left, 0, i );
+        }
+    }
+
+    private static void percDown( int [ ] a, int base, int i, int n )
+    {
+        int tmp = a[ base + i ];
+        for( int child; ( child = 2 * i + 1 ) < n; i = child )
+        {
+            if( child != n - 1 && a[ base + child ] < a[ base + child + 1 ] )
+                child++;
+            if( tmp < a[ base + child ] )
+                a[ base + i ] = a[ base + child ];
+            else
+                break;
+        }
+        a[ base + i ] = tmp;
+    }
+
+    /**
+     * Internal quicksort method that makes recursive calls.
+     * @param a the array.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     * @param depth the number of levels left before switching to heapsort.
+     */
+    private static void quicksort( long [ ] a, int left, int right, int depth )
+    {
+        while( right - left >= NETWORK_SIZE )
+        {
+            if( depth-- == 0 )
+            {
+                heapsort( a, left, right );
+                return;
+            }
+
+            int p = partition( a, left, right );
+
+            int q = p;
+            if( p == left )
+                q = partitionEqual( a, left + 1, right, a[ left ] ) - 1;
+
+            if( p - left < right - q )
+            {
+                quicksort( a, left, p - 1, depth );
+                left = q + 1;
+            }
+            else
+            {
+                quicksort( a, q + 1, right, depth );
+                right = p - 1;
+            }
+        }
+        network( a, left, right );
+    }
+
+    private static int partition( long [ ] a, int left, int right )
+    {
+        int center = ( left + right ) >>> 1;
+        compareExchange( a, left, center );
+        compareExchange( a, center, right );
+        compareExchange( a, left, center );
+
+        swap( a, center, right );
+        long pivot = a[ right ];
+
+        int i = left;
+        for( int j = left; j < right; j++ )
+        {
+            long x = a[ j ];
+            a[ j ] = a[ i ];
+            a[ i ] = x;
+            i += x < pivot ? 1 : 0;
+        }
+
+        swap( a, i, right );
+        return i;
+    }
+
+    private static int partitionEqual( long [ ] a, int left, int right, long pivot )
+    {
+        int i = left;
+        for( int j = left; j <= right; j++ )
+        {
+            long x = a[ j ];
+            a[ j ] = a[ i ];
+            a[ i ] = x;
+            i += x <= pivot ? 1 : 0;
+        }
+        return i;
+    }
+
+    private static void network( long [ ] a, int left, int right )
+    {
+        int n = right - left + 1;
+        for( int c = 0; c < NETWORK.length; c += 2 )
+            if( NETWORK[ c + 1 ] < n )
+                compareExchange( a, left + NETWORK[ c ], left + NETWORK[ c + 1 ] );
+    }
+
+    private static void compareExchange( long [ ] a, int i, int j )
+    {
+        long x = a[ i ], y = a[ j ];
+        a[ i ] = Math.min( x, y );
+        a[ j ] = Math.max( x, y );
+    }
+
+    private static void swap( long [ ] a, int i, int j )
+    {
+        long tmp = a[ i ];
+        a[ i ] = a[ j ];
+        a[ j ] = tmp;
+    }
+
+    private static void heapsort( long [ ] a, int left, int right )
+    {
+        int n = right - left + 1;
+        for( int i = n / 2 - 1; i >= 0; i-- )  /* buildHeap */
+            percDown( a, left, i, n );
+        for( int i = n - 1; i > 0; i-- )
+        {
+            swap( a, left, left + i );          /* deleteMax */
+            percDown( a, left, 0, i );
+        }
+    }
+
+    private static void percDown( long [ ] a, int base, int i, int n )
+    {
+        long tmp = a[ base + i ];
+        for( int child; ( child = 2 * i + 1 ) < n; i = child )
+        {
+            if( child != n - 1 && a[ base + child ] < a[ base + child + 1 ] )
+                child++;
+            if( tmp < a[ base + child ] )
+                a[ base + i ] = a[ base + child ];
+            else
+                break;
+        }
+        a[ base + i ] = tmp;
+    }
+
+    private static int log2( int n )
+    {
+        return 32 - Integer.numberOfLeadingZeros( Math.max( n, 1 ) );
+    }
+
+    /**
+     * Build Batcher's odd-even merge sorting network for n items, n a power of 2.
+     * @return the comparators as consecutive (low, high) index pairs.
+     */
+    private static int [ ] oddEvenMergeNetwork( int n )
+    {
+        int [ ] pairs = new int[ 0 ];
+        int count = 0;
+        for( int p = 1; p < n; p <<= 1 )
+            for( int k = p; k >= 1; k >>= 1 )
+                for( int j = k % p; j + k < n; j += 2 * k )
+                    for( int i = 0; i < k && i + j + k < n; i++ )
+                        if( ( i + j ) / ( 2 * p ) == ( i + j + k ) / ( 2 * p ) )
+                        {
+                            if( count + 2 > pairs.length )
+                                pairs = Arrays.copyOf( pairs, Math.max( 16, 2 * pairs.length ) );
+                            pairs[ count++ ] = i + j;
+                            pairs[ count++ ] = i + j + k;
+                        }
+        return Arrays.copyOf( pairs, count );
+    }
+
+    // Compare the kernels against the library and existing sorts
+    public static void main( String [ ] args )
+    {
+        final int N = 5000000;
+        WorkloadGenerator gen = new WorkloadGenerator( 36 );
+        int [ ] data = gen.uniform( N, Integer.MAX_VALUE );
+
+        for( int round = 0; round < 3; round++ )
+        {
+            int [ ] a = data.clone( );
+            long start = System.nanoTime( );
+            sort( a );
+            System.out.println( "PrimitiveSort time: " + ( System.nanoTime( ) - start ) );
+            SortVerifier.verify( a, SortVerifier.checksum( data ) );
+
+            a = data.clone( );
+            start = System.nanoTime( );
+            Arrays.sort( a );
+            System.out.println( "Arrays.sort time: " + ( System.nanoTime( ) - start ) );
+
+            a = data.clone( );
+            start = System.nanoTime( );
+            RadixSort.radixSort( a );
+            System.out.println( "RadixSort.radixSort time: " + ( System.nanoTime( ) - start ) );
+        }
+
+        Integer [ ] boxed = WorkloadGenerator.boxed( data );
+        long start = System.nanoTime( );
+        Sort.quicksort( boxed );
+        System.out.println( "Sort.quicksort on Integer time: " + ( System.nanoTime( ) - start ) );
+    }
+}
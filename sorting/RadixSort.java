@@ -1,9 +1,11 @@
 package sorting;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.stream.IntStream;
 
 public class RadixSort
 {
@@ -49,27 +51,56 @@ public class RadixSort
      * Assume all have same length
      */
     public static void countingRadixSort( String [ ] arr, int stringLen )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            countingRadixSortPasses( arr, stringLen );
+        }
+        finally
+        {
+            SortMetrics.end( "countingRadixSort", arr.length );
+        }
+    }
+
+    private static void countingRadixSortPasses( String [ ] arr, int stringLen )
     {
         final int BUCKETS = 256;
         
         int N = arr.length;
         String [ ] buffer = new String[ N ];
+        SortMetrics.scratch( (long) N * SortMetrics.REFERENCE_BYTES );
 
         String [ ] in = arr;
         String [ ] out = buffer;
+        if( N == 0 )
+            return;
+
+          // one read of each string builds the counts of every pass
+        int [ ] [ ] counts = new int[ stringLen ] [ BUCKETS + 1 ];
+        SortMetrics.scratch( 4L * stringLen * ( BUCKETS + 1 ) );
+        for( int i = 0; i < N; i++ )
+        {
+            String s = in[ i ];
+            for( int pos = 0; pos < stringLen; pos++ )
+                counts[ pos ][ s.charAt( pos ) + 1 ]++;
+        }
         
         for( int pos = stringLen - 1; pos >= 0; pos-- )
         {
-            int[ ] count = new int [ BUCKETS + 1 ];
-            
-            for( int i = 0; i < N; i++ )
-                count[ in[ i ].charAt( pos ) + 1 ]++;
+            int[ ] count = counts[ pos ];
+
+              // every string has the same char here, so the pass would not move anything
+            if( count[ in[ 0 ].charAt( pos ) + 1 ] == N )
+                continue;
 
             for( int b = 1; b <= BUCKETS; b++ )
                 count[ b ] += count[ b - 1 ];
 
             for( int i = 0; i < N; i++ )
                 out[ count[ in[ i ].charAt( pos ) ]++ ] = in[ i ];
+            SortMetrics.pass( );
+            SortMetrics.moves( N );
             
               // swap in and out roles
             String [ ] tmp = in;
@@ -77,10 +108,13 @@ public class RadixSort
             out = tmp;
         }
         
-           // if odd number of passes, in is buffer, out is arr; so copy back
-        if( stringLen % 2 == 1 )
+           // if odd number of passes were done, in is buffer, out is arr; so copy back
+        if( in != arr )
+        {
             for( int i = 0; i < arr.length; i++ )
                 out[ i ] = in[ i ];
+            SortMetrics.moves( N );
+        }
     }
     
     /*
@@ -129,6 +163,646 @@ public class RadixSort
         }
     }*/
 
+    /*
+     * MSD radix sort an array of byte keys
+     * Bytes are compared as unsigned; a key that is a prefix of another comes first
+     * Keys may have any length
+     */
+    public static void radixSort( byte [ ] [ ] arr )
+    {
+        int N = arr.length;
+        msdRadixSort( arr, null, new byte[ N ] [ ], null, 0, N - 1, 0 );
+    }
+
+    /*
+     * MSD radix sort an array of Strings on their UTF-8 encoding
+     * Any Unicode text is allowed and strings may have any length
+     * The result is in code point order, which differs from compareTo
+     * only for supplementary characters against U+E000..U+FFFF
+     */
+    public static void radixSortUTF8( String [ ] arr )
+    {
+        int N = arr.length;
+        byte [ ] [ ] keys = new byte[ N ] [ ];
+
+        for( int i = 0; i < N; i++ )
+            keys[ i ] = arr[ i ].getBytes( StandardCharsets.UTF_8 );
+
+        msdRadixSort( keys, arr, new byte[ N ] [ ], new String[ N ], 0, N - 1, 0 );
+    }
+
+    private static final int BYTE_BUCKETS = 256;
+    private static final int MSD_CUTOFF = 15;
+
+    /*
+     * Internal MSD radix sort on position d of keys[lo..hi]
+     * vals, when not null, is rearranged along with keys
+     */
+    private static void msdRadixSort( byte [ ] [ ] keys, String [ ] vals,
+                                      byte [ ] [ ] keyAux, String [ ] valAux,
+                                      int lo, int hi, int d )
+    {
+        if( hi <= lo + MSD_CUTOFF )
+        {
+            insertionSort( keys, vals, lo, hi, d );
+            return;
+        }
+
+          // count[ 1 ] is for keys that end at position d
+        int [ ] count = new int[ BYTE_BUCKETS + 2 ];
+
+        for( int i = lo; i <= hi; i++ )
+            count[ byteAt( keys[ i ], d ) + 2 ]++;
+
+        for( int b = 0; b <= BYTE_BUCKETS; b++ )
+            count[ b + 1 ] += count[ b ];
+
+        for( int i = lo; i <= hi; i++ )
+        {
+            int idx = count[ byteAt( keys[ i ], d ) + 1 ]++;
+            keyAux[ idx ] = keys[ i ];
+            if( vals != null )
+                valAux[ idx ] = vals[ i ];
+        }
+
+        System.arraycopy( keyAux, 0, keys, lo, hi - lo + 1 );
+        if( vals != null )
+            System.arraycopy( valAux, 0, vals, lo, hi - lo + 1 );
+
+          // keys that ended are already in place; sort the rest on the next byte
+        for( int b = 0; b < BYTE_BUCKETS; b++ )
+            msdRadixSort( keys, vals, keyAux, valAux, lo + count[ b ], lo + count[ b + 1 ] - 1, d + 1 );
+    }
+
+    /*
+     * Unsigned byte of key at position d, or -1 past the end of key
+     */
+    private static int byteAt( byte [ ] key, int d )
+    {
+        return d < key.length ? key[ d ] & 0xFF : -1;
+    }
+
+    /*
+     * Insertion sort of keys[lo..hi] that all share their first d bytes
+     */
+    private static void insertionSort( byte [ ] [ ] keys, String [ ] vals, int lo, int hi, int d )
+    {
+        for( int p = lo + 1; p <= hi; p++ )
+        {
+            byte [ ] tmp = keys[ p ];
+            String tmpVal = vals != null ? vals[ p ] : null;
+            int j;
+
+            for( j = p; j > lo && compareBytes( tmp, keys[ j - 1 ], d ) < 0; j-- )
+            {
+                keys[ j ] = keys[ j - 1 ];
+                if( vals != null )
+                    vals[ j ] = vals[ j - 1 ];
+            }
+            keys[ j ] = tmp;
+            if( vals != null )
+                vals[ j ] = tmpVal;
+        }
+    }
+
+    /*
+     * Compare two keys as unsigned bytes, starting at position d
+     */
+    static int compareBytes( byte [ ] a, byte [ ] b, int d )
+    {
+        int len = Math.min( a.length, b.length );
+        for( int i = d; i < len; i++ )
+        {
+            int diff = ( a[ i ] & 0xFF ) - ( b[ i ] & 0xFF );
+            if( diff != 0 )
+                return diff;
+        }
+        return a.length - b.length;
+    }
+
+    // Subarrays this small are finished by insertion sort in the in-place MSD sorts
+    private static final int FLAG_CUTOFF = 32;
+
+    /*
+     * In-place MSD radix sort (American flag sort) of an array of Strings
+     * Each char is taken as two byte digits, so the order is that of compareTo
+     * Items are moved to their buckets by cycle-leader permutation; the extra
+     * space is two count arrays of 257 ints per level, not a copy of the input
+     */
+    public static void americanFlagSort( String [ ] arr )
+    {
+        flagSort( arr, 0, arr.length, 0, new ArrayList<int [ ]>( ) );
+    }
+
+    /*
+     * In-place American flag sort of Strings that sorts the top-level
+     * buckets concurrently on the common fork-join pool
+     */
+    public static void parallelAmericanFlagSort( String [ ] arr )
+    {
+        if( arr.length <= FLAG_CUTOFF )
+        {
+            insertionSort( arr, 0, arr.length );
+            return;
+        }
+
+        final int [ ] first = new int[ BYTE_BUCKETS + 2 ];
+        flagDistribute( arr, 0, arr.length, 0, first, new int[ BYTE_BUCKETS + 1 ] );
+        IntStream.range( 1, BYTE_BUCKETS + 1 ).parallel( ).forEach( b ->
+            flagSort( arr, first[ b ], first[ b + 1 ], 1, new ArrayList<int [ ]>( ) ) );
+    }
+
+    /*
+     * Internal American flag sort of arr[lo..hi) on digit d
+     * levels holds reusable count arrays, two per level
+     */
+    private static void flagSort( String [ ] arr, int lo, int hi, int d, List<int [ ]> levels )
+    {
+        if( hi - lo <= FLAG_CUTOFF )
+        {
+            insertionSort( arr, lo, hi );
+            return;
+        }
+
+        while( levels.size( ) <= 2 * d )
+        {
+            levels.add( new int[ BYTE_BUCKETS + 2 ] );
+            levels.add( new int[ BYTE_BUCKETS + 1 ] );
+        }
+        int [ ] first = levels.get( 2 * d );
+
+        flagDistribute( arr, lo, hi, d, first, levels.get( 2 * d + 1 ) );
+
+          // bucket 0 holds the strings that have ended; they are equal
+        for( int b = 1; b <= BYTE_BUCKETS; b++ )
+            if( first[ b + 1 ] - first[ b ] > 1 )
+                flagSort( arr, first[ b ], first[ b + 1 ], d + 1, levels );
+    }
+
+    /*
+     * Count the digits of arr[lo..hi) and permute every string into its bucket
+     * On return bucket b is arr[first[b]..first[b+1])
+     */
+    private static void flagDistribute( String [ ] arr, int lo, int hi, int d, int [ ] first, int [ ] next )
+    {
+        Arrays.fill( first, 0 );
+        for( int i = lo; i < hi; i++ )
+            first[ flagDigit( arr[ i ], d ) + 1 ]++;
+
+        first[ 0 ] = lo;
+        for( int b = 1; b <= BYTE_BUCKETS + 1; b++ )
+            first[ b ] += first[ b - 1 ];
+        System.arraycopy( first, 0, next, 0, BYTE_BUCKETS + 1 );
+
+        for( int b = 0; b <= BYTE_BUCKETS; b++ )
+            while( next[ b ] < first[ b + 1 ] )
+            {
+                String s = arr[ next[ b ] ];
+                int c = flagDigit( s, d );
+                while( c != b )
+                {
+                    String tmp = arr[ next[ c ] ];
+                    arr[ next[ c ]++ ] = s;
+                    s = tmp;
+                    c = flagDigit( s, d );
+                }
+                arr[ next[ b ]++ ] = s;
+            }
+    }
+
+    /*
+     * Bucket of s at byte digit d: 0 past the end, else 1 + the byte
+     * Even digits are the high byte of a char, odd digits the low byte
+     */
+    static int flagDigit( String s, int d )
+    {
+        int pos = d >>> 1;
+        if( pos >= s.length( ) )
+            return 0;
+        char c = s.charAt( pos );
+        return ( ( d & 1 ) == 0 ? c >>> 8 : c & 0xFF ) + 1;
+    }
+
+    /*
+     * Insertion sort of arr[lo..hi) by compareTo
+     */
+    private static void insertionSort( String [ ] arr, int lo, int hi )
+    {
+        for( int p = lo + 1; p < hi; p++ )
+        {
+            String tmp = arr[ p ];
+            int j;
+
+            for( j = p; j > lo && tmp.compareTo( arr[ j - 1 ] ) < 0; j-- )
+                arr[ j ] = arr[ j - 1 ];
+            arr[ j ] = tmp;
+        }
+    }
+
+    /*
+     * In-place MSD radix sort (American flag sort) of an array of ints
+     * Four byte digits from the top; the sign bit is flipped for signed order
+     */
+    public static void americanFlagSort( int [ ] arr )
+    {
+        flagSort( arr, 0, arr.length, 24, new int[ 4 ] [ BYTE_BUCKETS + 1 ], new int[ 4 ] [ BYTE_BUCKETS ] );
+    }
+
+    /*
+     * In-place American flag sort of ints that sorts the top-level
+     * buckets concurrently on the common fork-join pool
+     */
+    public static void parallelAmericanFlagSort( int [ ] arr )
+    {
+        if( arr.length <= FLAG_CUTOFF )
+        {
+            insertionSort( arr, 0, arr.length );
+            return;
+        }
+
+        final int [ ] first = new int[ BYTE_BUCKETS + 1 ];
+        flagDistribute( arr, 0, arr.length, 24, first, new int[ BYTE_BUCKETS ] );
+        IntStream.range( 0, BYTE_BUCKETS ).parallel( ).forEach( b ->
+            flagSort( arr, first[ b ], first[ b + 1 ], 16,
+                      new int[ 4 ] [ BYTE_BUCKETS + 1 ], new int[ 4 ] [ BYTE_BUCKETS ] ) );
+    }
+
+    /*
+     * Internal American flag sort of arr[lo..hi) on the byte at shift
+     */
+    private static void flagSort( int [ ] arr, int lo, int hi, int shift, int [ ] [ ] firsts, int [ ] [ ] nexts )
+    {
+        if( hi - lo <= FLAG_CUTOFF )
+        {
+            insertionSort( arr, lo, hi );
+            return;
+        }
+
+        int level = shift >>> 3;
+        int [ ] first = firsts[ level ];
+        flagDistribute( arr, lo, hi, shift, first, nexts[ level ] );
+
+        if( shift > 0 )
+            for( int b = 0; b < BYTE_BUCKETS; b++ )
+                if( first[ b + 1 ] - first[ b ] > 1 )
+                    flagSort( arr, first[ b ], first[ b + 1 ], shift - 8, firsts, nexts );
+    }
+
+    /*
+     * Count the bytes at shift of arr[lo..hi) and permute every int into its bucket
+     * On return bucket b is arr[first[b]..first[b+1])
+     */
+    private static void flagDistribute( int [ ] arr, int lo, int hi, int shift, int [ ] first, int [ ] next )
+    {
+        Arrays.fill( first, 0 );
+        for( int i = lo; i < hi; i++ )
+            first[ ( ( arr[ i ] ^ Integer.MIN_VALUE ) >>> shift & 0xFF ) + 1 ]++;
+
+        first[ 0 ] = lo;
+        for( int b = 1; b <= BYTE_BUCKETS; b++ )
+            first[ b ] += first[ b - 1 ];
+        System.arraycopy( first, 0, next, 0, BYTE_BUCKETS );
+
+        for( int b = 0; b < BYTE_BUCKETS; b++ )
+            while( next[ b ] < first[ b + 1 ] )
+            {
+                int x = arr[ next[ b ] ];
+                int c = ( x ^ Integer.MIN_VALUE ) >>> shift & 0xFF;
+                while( c != b )
+                {
+                    int tmp = arr[ next[ c ] ];
+                    arr[ next[ c ]++ ] = x;
+                    x = tmp;
+                    c = ( x ^ Integer.MIN_VALUE ) >>> shift & 0xFF;
+                }
+                arr[ next[ b ]++ ] = x;
+            }
+    }
+
+    /*
+     * Insertion sort of arr[lo..hi)
+     */
+    private static void insertionSort( int [ ] arr, int lo, int hi )
+    {
+        for( int p = lo + 1; p < hi; p++ )
+        {
+            int tmp = arr[ p ];
+            int j;
+
+            for( j = p; j > lo && tmp < arr[ j - 1 ]; j-- )
+                arr[ j ] = arr[ j - 1 ];
+            arr[ j ] = tmp;
+        }
+    }
+
+    /*
+     * In-place MSD radix sort (American flag sort) of an array of longs
+     * Eight byte digits from the top; the sign bit is flipped for signed order
+     */
+    public static void americanFlagSort( long [ ] arr )
+    {
+        flagSort( arr, 0, arr.length, 56, new int[ 8 ] [ BYTE_BUCKETS + 1 ], new int[ 8 ] [ BYTE_BUCKETS ] );
+    }
+
+    /*
+     * Internal American flag sort of arr[lo..hi) on the byte at shift
+     */
+    private static void flagSort( long [ ] arr, int lo, int hi, int shift, int [ ] [ ] firsts, int [ ] [ ] nexts )
+    {
+        if( hi - lo <= FLAG_CUTOFF )
+        {
+            insertionSort( arr, lo, hi );
+            return;
+        }
+
+        int level = shift >>> 3;
+        int [ ] first = firsts[ level ];
+        flagDistribute( arr, lo, hi, shift, first, nexts[ level ] );
+
+        if( shift > 0 )
+            for( int b = 0; b < BYTE_BUCKETS; b++ )
+                if( first[ b + 1 ] - first[ b ] > 1 )
+                    flagSort( arr, first[ b ], first[ b + 1 ], shift - 8, firsts, nexts );
+    }
+
+    /*
+     * Count the bytes at shift of arr[lo..hi) and permute every long into its bucket
+     * On return bucket b is arr[first[b]..first[b+1])
+     */
+    private static void flagDistribute( long [ ] arr, int lo, int hi, int shift, int [ ] first, int [ ] next )
+    {
+        Arrays.fill( first, 0 );
+        for( int i = lo; i < hi; i++ )
+            first[ (int) ( ( arr[ i ] ^ Long.MIN_VALUE ) >>> shift & 0xFF ) + 1 ]++;
+
+        first[ 0 ] = lo;
+        for( int b = 1; b <= BYTE_BUCKETS; b++ )
+            first[ b ] += first[ b - 1 ];
+        System.arraycopy( first, 0, next, 0, BYTE_BUCKETS );
+
+        for( int b = 0; b < BYTE_BUCKETS; b++ )
+            while( next[ b ] < first[ b + 1 ] )
+            {
+                long x = arr[ next[ b ] ];
+                int c = (int) ( ( x ^ Long.MIN_VALUE ) >>> shift & 0xFF );
+                while( c != b )
+                {
+                    long tmp = arr[ next[ c ] ];
+                    arr[ next[ c ]++ ] = x;
+                    x = tmp;
+                    c = (int) ( ( x ^ Long.MIN_VALUE ) >>> shift & 0xFF );
+                }
+                arr[ next[ b ]++ ] = x;
+            }
+    }
+
+    /*
+     * Insertion sort of arr[lo..hi)
+     */
+    private static void insertionSort( long [ ] arr, int lo, int hi )
+    {
+        for( int p = lo + 1; p < hi; p++ )
+        {
+            long tmp = arr[ p ];
+            int j;
+
+            for( j = p; j > lo && tmp < arr[ j - 1 ]; j-- )
+                arr[ j ] = arr[ j - 1 ];
+            arr[ j ] = tmp;
+        }
+    }
+
+    // Digit width used by the primitive radix sorts: 3 passes for int, 6 for long
+    private static final int DIGIT_BITS = 11;
+    private static final int DIGIT_BUCKETS = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = DIGIT_BUCKETS - 1;
+
+    /*
+     * LSD radix sort an array of ints
+     * Negative values are handled by flipping the sign bit of each key
+     */
+    public static void radixSort( int [ ] arr )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            radixSortBits( arr, Integer.MIN_VALUE );
+        }
+        finally
+        {
+            SortMetrics.end( "radixSort", arr.length );
+        }
+    }
+
+    /*
+     * LSD radix sort an array of longs
+     * Negative values are handled by flipping the sign bit of each key
+     */
+    public static void radixSort( long [ ] arr )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            radixSortBits( arr, Long.MIN_VALUE );
+        }
+        finally
+        {
+            SortMetrics.end( "radixSort", arr.length );
+        }
+    }
+
+    /*
+     * LSD radix sort an array of floats
+     * Uses the same order as Arrays.sort: -0.0f before 0.0f, NaN last
+     */
+    public static void radixSort( float [ ] arr )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            radixSortKeys( arr );
+        }
+        finally
+        {
+            SortMetrics.end( "radixSort", arr.length );
+        }
+    }
+
+    private static void radixSortKeys( float [ ] arr )
+    {
+        int [ ] keys = new int[ arr.length ];
+        SortMetrics.scratch( 4L * arr.length );
+
+        for( int i = 0; i < arr.length; i++ )
+        {
+            int bits = Float.floatToIntBits( arr[ i ] );
+            keys[ i ] = bits ^ ( ( bits >> 31 ) | Integer.MIN_VALUE );
+        }
+
+        radixSortBits( keys, 0 );
+
+        for( int i = 0; i < arr.length; i++ )
+        {
+            int key = keys[ i ];
+            arr[ i ] = Float.intBitsToFloat( key ^ ( ( ~key >> 31 ) | Integer.MIN_VALUE ) );
+        }
+    }
+
+    /*
+     * LSD radix sort an array of doubles
+     * Uses the same order as Arrays.sort: -0.0 before 0.0, NaN last
+     */
+    public static void radixSort( double [ ] arr )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            radixSortKeys( arr );
+        }
+        finally
+        {
+            SortMetrics.end( "radixSort", arr.length );
+        }
+    }
+
+    private static void radixSortKeys( double [ ] arr )
+    {
+        long [ ] keys = new long[ arr.length ];
+        SortMetrics.scratch( 8L * arr.length );
+
+        for( int i = 0; i < arr.length; i++ )
+        {
+            long bits = Double.doubleToLongBits( arr[ i ] );
+            keys[ i ] = bits ^ ( ( bits >> 63 ) | Long.MIN_VALUE );
+        }
+
+        radixSortBits( keys, 0L );
+
+        for( int i = 0; i < arr.length; i++ )
+        {
+            long key = keys[ i ];
+            arr[ i ] = Double.longBitsToDouble( key ^ ( ( ~key >> 63 ) | Long.MIN_VALUE ) );
+        }
+    }
+
+    /*
+     * Counting radix sort of ints, ordered as unsigned after xor with flip
+     * The digit counts of all passes are gathered in a single scan
+     * A pass is skipped when every key has the same digit
+     */
+    private static void radixSortBits( int [ ] arr, int flip )
+    {
+        int N = arr.length;
+        if( N < 2 )
+            return;
+
+        final int PASSES = ( 32 + DIGIT_BITS - 1 ) / DIGIT_BITS;
+
+        int [ ] buffer = new int[ N ];
+        int [ ] [ ] counts = new int[ PASSES ] [ DIGIT_BUCKETS + 1 ];
+        SortMetrics.scratch( 4L * N + 4L * PASSES * ( DIGIT_BUCKETS + 1 ) );
+
+          // one read of the input builds the counts of every pass
+        for( int i = 0; i < N; i++ )
+        {
+            int key = arr[ i ] ^ flip;
+            for( int p = 0; p < PASSES; p++ )
+                counts[ p ][ ( key >>> ( p * DIGIT_BITS ) & DIGIT_MASK ) + 1 ]++;
+        }
+
+        int [ ] in = arr;
+        int [ ] out = buffer;
+
+        for( int p = 0; p < PASSES; p++ )
+        {
+            int shift = p * DIGIT_BITS;
+            int [ ] count = counts[ p ];
+
+            if( count[ ( ( in[ 0 ] ^ flip ) >>> shift & DIGIT_MASK ) + 1 ] == N )
+                continue;
+
+            for( int b = 1; b <= DIGIT_BUCKETS; b++ )
+                count[ b ] += count[ b - 1 ];
+
+            for( int i = 0; i < N; i++ )
+                out[ count[ ( in[ i ] ^ flip ) >>> shift & DIGIT_MASK ]++ ] = in[ i ];
+
+            SortMetrics.pass( );
+            SortMetrics.moves( N );
+
+              // swap in and out roles
+            int [ ] tmp = in;
+            in = out;
+            out = tmp;
+        }
+
+           // if odd number of passes were done, in is buffer; so copy back
+        if( in != arr )
+        {
+            System.arraycopy( in, 0, arr, 0, N );
+            SortMetrics.moves( N );
+        }
+    }
+
+    /*
+     * Counting radix sort of longs, ordered as unsigned after xor with flip
+     * The digit counts of all passes are gathered in a single scan
+     * A pass is skipped when every key has the same digit
+     */
+    private static void radixSortBits( long [ ] arr, long flip )
+    {
+        int N = arr.length;
+        if( N < 2 )
+            return;
+
+        final int PASSES = ( 64 + DIGIT_BITS - 1 ) / DIGIT_BITS;
+
+        long [ ] buffer = new long[ N ];
+        int [ ] [ ] counts = new int[ PASSES ] [ DIGIT_BUCKETS + 1 ];
+        SortMetrics.scratch( 8L * N + 4L * PASSES * ( DIGIT_BUCKETS + 1 ) );
+
+          // one read of the input builds the counts of every pass
+        for( int i = 0; i < N; i++ )
+        {
+            long key = arr[ i ] ^ flip;
+            for( int p = 0; p < PASSES; p++ )
+                counts[ p ][ (int) ( key >>> ( p * DIGIT_BITS ) & DIGIT_MASK ) + 1 ]++;
+        }
+
+        long [ ] in = arr;
+        long [ ] out = buffer;
+
+        for( int p = 0; p < PASSES; p++ )
+        {
+            int shift = p * DIGIT_BITS;
+            int [ ] count = counts[ p ];
+
+            if( count[ (int) ( ( in[ 0 ] ^ flip ) >>> shift & DIGIT_MASK ) + 1 ] == N )
+                continue;
+
+            for( int b = 1; b <= DIGIT_BUCKETS; b++ )
+                count[ b ] += count[ b - 1 ];
+
+            for( int i = 0; i < N; i++ )
+                out[ count[ (int) ( ( in[ i ] ^ flip ) >>> shift & DIGIT_MASK ) ]++ ] = in[ i ];
+
+            SortMetrics.pass( );
+            SortMetrics.moves( N );
+
+              // swap in and out roles
+            long [ ] tmp = in;
+            in = out;
+            out = tmp;
+        }
+
+           // if odd number of passes were done, in is buffer; so copy back
+        if( in != arr )
+        {
+            System.arraycopy( in, 0, arr, 0, N );
+            SortMetrics.moves( N );
+        }
+    }
+
     // Print the array
     private static void print( String[] a)
     {
@@ -145,15 +819,17 @@ public class RadixSort
     {
         List<String> lst = new ArrayList<>( );
         //Random r = new Random( );
-        long start_time, total_time1, total_time2;
+        long start_time, total_time1, total_time2, total_time3;
         //final int LEN = 4;
         String [ ] arr1 = new String[ lst.size( ) ];
         String [ ] arr2 = new String[ lst.size( ) ];
+        String [ ] arr3 = new String[ lst.size( ) ];
         
         for (int h=4; h<=10; h+=2)
         {
         	total_time1 = 0;
         	total_time2 = 0;
+        	total_time3 = 0;
 	        for (int j=0; j<10; j++)
 	        {        	
 		        RandomStringGenerator rand = new RandomStringGenerator();
@@ -165,8 +841,9 @@ public class RadixSort
 		
 		            lst.add( str );
 		        }
-		        lst.toArray( arr1 );
-		        lst.toArray( arr2 );
+		        arr1 = lst.toArray( arr1 );
+		        arr2 = lst.toArray( arr2 );
+		        arr3 = lst.toArray( arr3 );
 		        start_time = System.nanoTime();
 		        radixSortA(arr1, h);
 		        total_time1 += System.nanoTime() - start_time;
@@ -174,10 +851,15 @@ public class RadixSort
 		        start_time = System.nanoTime();
 		        countingRadixSort(arr2, h);
 		        total_time2 += System.nanoTime() - start_time;
+		        
+		        start_time = System.nanoTime();
+		        americanFlagSort(arr3);
+		        total_time3 += System.nanoTime() - start_time;
 		        lst.clear();
 	        }
 	        System.out.println( "Radix sort for "+ h + " length : " + total_time1 /10);
 	        System.out.println( "Radix count sort for "+ h + " length : " + total_time2 /10);
+	        System.out.println( "American flag sort for "+ h + " length : " + total_time3 /10);
         }
         
 //        total_time = 0;
@@ -1,12 +1,23 @@
 package sorting;
 
-import java.security.SecureRandom;
+import java.util.SplittableRandom;
 
 
 public class RandomStringGenerator
 {
 	static final String AB = "qwertyuiopasdfghjklzxcvbnm";
-	static SecureRandom rnd = new SecureRandom();
+	private final SplittableRandom rnd;
+	
+	public RandomStringGenerator()
+	{
+		rnd = new SplittableRandom();
+	}
+	
+	// Equal seeds give equal sequences of strings
+	public RandomStringGenerator(long seed)
+	{
+		rnd = new SplittableRandom(seed);
+	}
 	
 	public String RandomString()
 	{
@@ -15,11 +26,11 @@ public class RandomStringGenerator
 	
 	public String RandomString(int len)
 	{
-		StringBuilder sb = new StringBuilder(len);
+		char[] buf = new char[len];
 		for (int i=0; i<len; i++)
 		{
-			sb.append(AB.charAt(rnd.nextInt(AB.length())));
+			buf[i] = AB.charAt(rnd.nextInt(AB.length()));
 		}
-		return sb.toString();
+		return new String(buf);
 	}
 }
@@ -0,0 +1,177 @@
+package sorting;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel sample sort for very large arrays.
+ * Splitters are chosen from an oversampled random sample and stored as an
+ * implicit search tree. One parallel pass classifies every item into a bucket,
+ * a second one scatters the items to their buckets, and the buckets are then
+ * sorted independently with Sort.quicksort.
+ * The sort is not stable.
+ */
+public final class SampleSort
+{
+    // Below this size the classification passes do not pay for themselves
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    // Bucket numbers are kept in a byte per item, so at most 2^8 buckets
+    private static final int MAX_LOG_BUCKETS = 8;
+
+    // Sample items per bucket
+    private static final int OVERSAMPLE = 32;
+
+    /**
+     * Parallel sample sort on the common fork-join pool.
+     * @param a an array of Comparable items.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void parallelSort( AnyType [ ] a )
+    {
+        final int n = a.length;
+        int threads = ForkJoinPool.getCommonPoolParallelism( );
+        if( n < SEQUENTIAL_THRESHOLD || threads < 2 )
+        {
+            Sort.quicksort( a );
+            return;
+        }
+
+            // About four buckets per thread, rounded up to a power of 2
+        final int logBuckets = Math.min( MAX_LOG_BUCKETS,
+                32 - Integer.numberOfLeadingZeros( 4 * threads - 1 ) );
+        final int buckets = 1 << logBuckets;
+        final AnyType [ ] tree = splitterTree( a, buckets );
+
+        final int chunks = 4 * threads;
+        final int chunkSize = ( n + chunks - 1 ) / chunks;
+        final byte [ ] oracle = new byte[ n ];
+        final int [ ] [ ] counts = new int[ chunks ] [ buckets ];
+
+            // Pass 1: classify each chunk and count its bucket sizes
+        IntStream.range( 0, chunks ).parallel( ).forEach( c -> {
+            int [ ] count = counts[ c ];
+            for( int i = c * chunkSize, end = Math.min( n, i + chunkSize ); i < end; i++ )
+            {
+                int b = classify( tree, logBuckets, a[ i ] );
+                oracle[ i ] = (byte) b;
+                count[ b ]++;
+            }
+        } );
+
+            // Turn the counts into the write position of each chunk in each bucket
+        final int [ ] bucketStart = new int[ buckets + 1 ];
+        int sum = 0;
+        for( int b = 0; b < buckets; b++ )
+        {
+            bucketStart[ b ] = sum;
+            for( int c = 0; c < chunks; c++ )
+            {
+                int count = counts[ c ][ b ];
+                counts[ c ][ b ] = sum;
+                sum += count;
+            }
+        }
+        bucketStart[ buckets ] = n;
+
+            // Pass 2: scatter; every chunk writes to its own disjoint ranges
+        @SuppressWarnings( "unchecked" )
+        final AnyType [ ] tmpArray = (AnyType[]) new Comparable<?>[ n ];
+        IntStream.range( 0, chunks ).parallel( ).forEach( c -> {
+            int [ ] pos = counts[ c ];
+            for( int i = c * chunkSize, end = Math.min( n, i + chunkSize ); i < end; i++ )
+                tmpArray[ pos[ oracle[ i ] & 0xFF ]++ ] = a[ i ];
+        } );
+
+            // Pass 3: sort the buckets and copy them back
+        IntStream.range( 0, buckets ).parallel( ).forEach( b -> {
+            int left = bucketStart[ b ], right = bucketStart[ b + 1 ] - 1;
+            Sort.quicksort( tmpArray, left, right );
+            System.arraycopy( tmpArray, left, a, left, right - left + 1 );
+        } );
+    }
+
+    /**
+     * Return the bucket of x. The tree is descended without branching on
+     * the comparison: an item equal to a splitter goes left.
+     * @param tree the splitters as an implicit tree rooted at tree[ 1 ].
+     * @param logBuckets the depth of the tree.
+     * @param x the item to classify.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    int classify( AnyType [ ] tree, int logBuckets, AnyType x )
+    {
+        int j = 1;
+        for( int l = 0; l < logBuckets; l++ )
+            j = 2 * j + ( tree[ j ].compareTo( x ) >>> 31 );
+        return j - ( 1 << logBuckets );
+    }
+
+    /**
+     * Pick buckets - 1 splitters from a sorted random sample
+     * and lay them out as an implicit search tree.
+     * @param a an array of Comparable items.
+     * @param buckets the number of buckets, a power of 2.
+     * @return the tree; tree[ 0 ] is unused.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static <AnyType extends Comparable<? super AnyType>>
+    AnyType [ ] splitterTree( AnyType [ ] a, int buckets )
+    {
+        Random rand = new Random( a.length );
+        AnyType [ ] sample = (AnyType[]) new Comparable<?>[ buckets * OVERSAMPLE ];
+        for( int i = 0; i < sample.length; i++ )
+            sample[ i ] = a[ rand.nextInt( a.length ) ];
+        Sort.quicksort( sample );
+
+        AnyType [ ] splitters = (AnyType[]) new Comparable<?>[ buckets - 1 ];
+        for( int i = 0; i < splitters.length; i++ )
+            splitters[ i ] = sample[ ( i + 1 ) * OVERSAMPLE ];
+
+        AnyType [ ] tree = (AnyType[]) new Comparable<?>[ buckets ];
+        buildTree( tree, 1, splitters, 0, splitters.length - 1 );
+        return tree;
+    }
+
+    /**
+     * Internal method that places the median of splitters[lo..hi]
+     * at node and recurses into the children.
+     */
+    private static <AnyType> void buildTree( AnyType [ ] tree, int node,
+                                             AnyType [ ] splitters, int lo, int hi )
+    {
+        if( lo > hi )
+            return;
+        int mid = ( lo + hi ) >>> 1;
+        tree[ node ] = splitters[ mid ];
+        buildTree( tree, 2 * node, splitters, lo, mid - 1 );
+        buildTree( tree, 2 * node + 1, splitters, mid + 1, hi );
+    }
+
+    // Compare against the sequential sorts
+    public static void main( String [ ] args )
+    {
+        Integer [ ] a = new Integer[ 2000000 ];
+
+        Sort.Random_Intgenerator( a );
+        Integer [ ] b = a.clone( );
+        long start = System.nanoTime( );
+        Sort.quicksort( b );
+        System.out.println( "Quicksort time: " + ( System.nanoTime( ) - start ) );
+
+        b = a.clone( );
+        start = System.nanoTime( );
+        Sort.mergeSort( b );
+        System.out.println( "Mergesort time: " + ( System.nanoTime( ) - start ) );
+
+        start = System.nanoTime( );
+        parallelSort( a );
+        System.out.println( "Parallel sample sort time: " + ( System.nanoTime( ) - start ) );
+
+        for( int i = 0; i < a.length - 1; i++ )
+            if( a[ i ] > a[ i + 1 ] )
+                System.out.println( "Error at " + i );
+        System.out.println( "Finished checksort" );
+    }
+}
@@ -2,6 +2,7 @@ package sorting;
 
 import java.util.Random;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class that contains several sorting routines,
@@ -24,7 +25,7 @@ public final class Sort
         for( int p = 1; p < a.length; p++ )
         {
             AnyType tmp = a[ p ];
-            for( j = p; j > 0 && tmp.compareTo( a[ j - 1 ] ) < 0; j-- )
+            for( j = p; j > 0 && compare( tmp, a[ j - 1 ] ) < 0; j-- )
                 a[ j ] = a[ j - 1 ];
             a[ j ] = tmp;
         }
@@ -44,13 +45,24 @@ public final class Sort
             {
                 AnyType tmp = a[ i ];
                 for( j = i; j >= gap &&
-                            tmp.compareTo( a[ j - gap ] ) < 0; j -= gap )
+                            compare( tmp, a[ j - gap ] ) < 0; j -= gap )
                     a[ j ] = a[ j - gap ];
                 a[ j ] = tmp;
             }
     }
 
 
+    /**
+     * Internal method that compares two items and counts the comparison.
+     * @return the result of x.compareTo( y ).
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    int compare( AnyType x, AnyType y )
+    {
+        SortMetrics.comparison( );
+        return x.compareTo( y );
+    }
+
     /**
      * Internal method for heapsort.
      * @param i the index of an item in the heap.
@@ -76,14 +88,18 @@ public final class Sort
         for( tmp = a[ i ]; leftChild( i ) < n; i = child )
         {
             child = leftChild( i );
-            if( child != n - 1 && a[ child ].compareTo( a[ child + 1 ] ) < 0 )
+            if( child != n - 1 && compare( a[ child ], a[ child + 1 ] ) < 0 )
                 child++;
-            if( tmp.compareTo( a[ child ] ) < 0 )
+            if( compare( tmp, a[ child ] ) < 0 )
+            {
                 a[ i ] = a[ child ];
+                SortMetrics.moves( 1 );
+            }
             else
                 break;
         }
         a[ i ] = tmp;
+        SortMetrics.moves( 1 );
     }
     
     /**
@@ -93,12 +109,20 @@ public final class Sort
     public static <AnyType extends Comparable<? super AnyType>>
     void heapsort( AnyType [ ] a )
     {
-        for( int i = a.length / 2 - 1; i >= 0; i-- )  /* buildHeap */
-            percDown( a, i, a.length );
-        for( int i = a.length - 1; i > 0; i-- )
+        SortMetrics.begin( );
+        try
+        {
+            for( int i = a.length / 2 - 1; i >= 0; i-- )  /* buildHeap */
+                percDown( a, i, a.length );
+            for( int i = a.length - 1; i > 0; i-- )
+            {
+                swapReferences( a, 0, i );                /* deleteMax */
+                percDown( a, 0, i );
+            }
+        }
+        finally
         {
-            swapReferences( a, 0, i );                /* deleteMax */
-            percDown( a, 0, i );
+            SortMetrics.end( "heapsort", a.length );
         }
     }
 
@@ -110,9 +134,18 @@ public final class Sort
     public static <AnyType extends Comparable<? super AnyType>>
     void mergeSort( AnyType [ ] a )
     {
-        AnyType [ ] tmpArray = (AnyType[]) new Comparable[ a.length ];
+        SortMetrics.begin( );
+        try
+        {
+            AnyType [ ] tmpArray = (AnyType[]) new Comparable[ a.length ];
+            SortMetrics.scratch( (long) a.length * SortMetrics.REFERENCE_BYTES );
 
-        mergeSort( a, tmpArray, 0, a.length - 1 );
+            mergeSort( a, tmpArray, 0, a.length - 1 );
+        }
+        finally
+        {
+            SortMetrics.end( "mergeSort", a.length );
+        }
     }
 
     /**
@@ -122,16 +155,18 @@ public final class Sort
      * @param left the left-most index of the subarray.
      * @param right the right-most index of the subarray.
      */
-    private static <AnyType extends Comparable<? super AnyType>>
+    static <AnyType extends Comparable<? super AnyType>>
     void mergeSort( AnyType [ ] a, AnyType [ ] tmpArray,
                int left, int right )
     {
         if( left < right )
         {
+            SortMetrics.enter( );
             int center = ( left + right ) / 2;
             mergeSort( a, tmpArray, left, center );
             mergeSort( a, tmpArray, center + 1, right );
             merge( a, tmpArray, left, center + 1, right );
+            SortMetrics.exit( );
         }
     }
 
@@ -143,7 +178,7 @@ public final class Sort
      * @param rightPos the index of the start of the second half.
      * @param rightEnd the right-most index of the subarray.
      */
-    private static <AnyType extends Comparable<? super AnyType>>
+    static <AnyType extends Comparable<? super AnyType>>
     void merge( AnyType [ ] a, AnyType [ ] tmpArray, int leftPos, int rightPos, int rightEnd )
     {
         int leftEnd = rightPos - 1;
@@ -152,7 +187,7 @@ public final class Sort
 
         // Main loop
         while( leftPos <= leftEnd && rightPos <= rightEnd )
-            if( a[ leftPos ].compareTo( a[ rightPos ] ) <= 0 )
+            if( compare( a[ leftPos ], a[ rightPos ] ) <= 0 )
                 tmpArray[ tmpPos++ ] = a[ leftPos++ ];
             else
                 tmpArray[ tmpPos++ ] = a[ rightPos++ ];
@@ -166,6 +201,240 @@ public final class Sort
         // Copy tmpArray back
         for( int i = 0; i < numElements; i++, rightEnd-- )
             a[ rightEnd ] = tmpArray[ rightEnd ];
+        SortMetrics.moves( 2L * numElements );
+    }
+
+    /**
+     * In-place stable mergesort.
+     * Uses a fixed buffer of IN_PLACE_BUFFER references whatever the size
+     * of a, so the extra space is O(1); merges of runs longer than the
+     * buffer are done by rotations, for O(N log^2 N) moves in the worst case.
+     * @param a an array of Comparable items.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void inPlaceMergeSort( AnyType [ ] a )
+    {
+        mergeSortBuffered( a, IN_PLACE_BUFFER );
+    }
+
+    private static final int IN_PLACE_BUFFER = 512;
+
+    /**
+     * Mergesort that uses at most bufferSize extra references.
+     * The result is the same as mergeSort( a ), including stability.
+     * @param a an array of Comparable items.
+     * @param bufferSize the length of the merge buffer; 0 merges by rotations only.
+     */
+    @SuppressWarnings( "unchecked" )
+    static <AnyType extends Comparable<? super AnyType>>
+    void mergeSortBuffered( AnyType [ ] a, int bufferSize )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            int length = Math.min( bufferSize, a.length / 2 );
+            AnyType [ ] buffer = (AnyType[]) new Comparable<?>[ Math.max( length, 0 ) ];
+            SortMetrics.scratch( (long) buffer.length * SortMetrics.REFERENCE_BYTES );
+
+            mergeSortBuffered( a, buffer, 0, a.length - 1 );
+        }
+        finally
+        {
+            SortMetrics.end( "mergeSortBuffered", a.length );
+        }
+    }
+
+    private static final int MERGE_CUTOFF = 16;
+
+    /**
+     * Internal method that makes recursive calls.
+     * @param a an array of Comparable items.
+     * @param buffer the merge buffer.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    void mergeSortBuffered( AnyType [ ] a, AnyType [ ] buffer, int left, int right )
+    {
+        if( right - left < MERGE_CUTOFF )
+        {
+            insertionSort( a, left, right );
+            return;
+        }
+
+        SortMetrics.enter( );
+        int center = ( left + right ) / 2;
+        mergeSortBuffered( a, buffer, left, center );
+        mergeSortBuffered( a, buffer, center + 1, right );
+        if( compare( a[ center ], a[ center + 1 ] ) > 0 )  // Skip runs already in order
+            mergeAdaptive( a, buffer, left, center + 1, right );
+        SortMetrics.exit( );
+    }
+
+    /**
+     * Internal method that merges two sorted halves of a subarray
+     * with a buffer that may be shorter than either half.
+     * When the shorter half fits, it is moved to the buffer and merged back.
+     * Otherwise the longer half is cut in the middle, the matching cut of
+     * the other half is found by binary search, the two middle pieces are
+     * swapped by a rotation, and both sides are merged recursively.
+     * @param a an array of Comparable items.
+     * @param buffer the merge buffer.
+     * @param leftPos the left-most index of the subarray.
+     * @param rightPos the index of the start of the second half.
+     * @param rightEnd the right-most index of the subarray.
+     */
+    static <AnyType extends Comparable<? super AnyType>>
+    void mergeAdaptive( AnyType [ ] a, AnyType [ ] buffer, int leftPos, int rightPos, int rightEnd )
+    {
+        for( ; ; )
+        {
+            int len1 = rightPos - leftPos;
+            int len2 = rightEnd - rightPos + 1;
+            if( len1 == 0 || len2 == 0 )
+                return;
+
+            if( len1 <= len2 && len1 <= buffer.length )
+            {
+                mergeLow( a, buffer, leftPos, rightPos, rightEnd );
+                return;
+            }
+            if( len2 <= buffer.length )
+            {
+                mergeHigh( a, buffer, leftPos, rightPos, rightEnd );
+                return;
+            }
+            if( len1 + len2 == 2 )
+            {
+                if( compare( a[ rightPos ], a[ leftPos ] ) < 0 )
+                    swapReferences( a, leftPos, rightPos );
+                return;
+            }
+
+            int leftCut, rightCut;
+            if( len1 > len2 )
+            {
+                leftCut = leftPos + len1 / 2;
+                rightCut = lowerBound( a, rightPos, rightEnd + 1, a[ leftCut ] );
+            }
+            else
+            {
+                rightCut = rightPos + len2 / 2;
+                leftCut = upperBound( a, leftPos, rightPos, a[ rightCut ] );
+            }
+
+            rotate( a, leftCut, rightPos, rightCut );
+            int newCenter = leftCut + ( rightCut - rightPos );
+
+                // Recurse on the smaller side, loop on the larger
+            if( newCenter - leftPos < rightEnd - newCenter )
+            {
+                mergeAdaptive( a, buffer, leftPos, leftCut, newCenter - 1 );
+                leftPos = newCenter;
+                rightPos = rightCut;
+            }
+            else
+            {
+                mergeAdaptive( a, buffer, newCenter, rightCut, rightEnd );
+                rightPos = leftCut;
+                rightEnd = newCenter - 1;
+            }
+        }
+    }
+
+    /**
+     * Internal method that merges through the buffer
+     * when the first half fits in it.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    void mergeLow( AnyType [ ] a, AnyType [ ] buffer, int leftPos, int rightPos, int rightEnd )
+    {
+        int len1 = rightPos - leftPos;
+        System.arraycopy( a, leftPos, buffer, 0, len1 );
+
+        int i = 0, tmpPos = leftPos;
+        while( i < len1 && rightPos <= rightEnd )
+            if( compare( a[ rightPos ], buffer[ i ] ) < 0 )
+                a[ tmpPos++ ] = a[ rightPos++ ];
+            else
+                a[ tmpPos++ ] = buffer[ i++ ];
+
+        System.arraycopy( buffer, i, a, tmpPos, len1 - i );  // Copy rest of first half
+        SortMetrics.moves( 2L * len1 + ( rightPos - len1 - leftPos ) );
+    }
+
+    /**
+     * Internal method that merges backwards through the buffer
+     * when the second half fits in it.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    void mergeHigh( AnyType [ ] a, AnyType [ ] buffer, int leftPos, int rightPos, int rightEnd )
+    {
+        int len2 = rightEnd - rightPos + 1;
+        System.arraycopy( a, rightPos, buffer, 0, len2 );
+
+        int i = rightPos - 1, j = len2 - 1, tmpPos = rightEnd;
+        while( i >= leftPos && j >= 0 )
+            if( compare( buffer[ j ], a[ i ] ) < 0 )
+                a[ tmpPos-- ] = a[ i-- ];
+            else
+                a[ tmpPos-- ] = buffer[ j-- ];
+
+        System.arraycopy( buffer, 0, a, leftPos, j + 1 );  // Copy rest of second half
+        SortMetrics.moves( 2L * len2 + ( rightPos - 1 - i ) );
+    }
+
+    /**
+     * Internal method that exchanges a[first..middle) and a[middle..last)
+     * in place by three reversals.
+     */
+    private static <AnyType> void rotate( AnyType [ ] a, int first, int middle, int last )
+    {
+        if( first == middle || middle == last )
+            return;
+        reverse( a, first, middle - 1 );
+        reverse( a, middle, last - 1 );
+        reverse( a, first, last - 1 );
+    }
+
+    private static <AnyType> void reverse( AnyType [ ] a, int left, int right )
+    {
+        while( left < right )
+            swapReferences( a, left++, right-- );
+    }
+
+    /**
+     * Return the first index in a[low..high) whose item is not less than x.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    int lowerBound( AnyType [ ] a, int low, int high, AnyType x )
+    {
+        while( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if( compare( a[ mid ], x ) < 0 )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Return the first index in a[low..high) whose item is greater than x.
+     */
+    private static <AnyType extends Comparable<? super AnyType>>
+    int upperBound( AnyType [ ] a, int low, int high, AnyType x )
+    {
+        while( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if( compare( a[ mid ], x ) <= 0 )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
     }
 
     /**
@@ -175,7 +444,15 @@ public final class Sort
     public static <AnyType extends Comparable<? super AnyType>>
     void quicksort( AnyType [ ] a )
     {
-        quicksort( a, 0, a.length - 1 );
+        SortMetrics.begin( );
+        try
+        {
+            quicksort( a, 0, a.length - 1 );
+        }
+        finally
+        {
+            SortMetrics.end( "quicksort", a.length );
+        }
     }
 
     private static final int CUTOFF = 3;
@@ -191,6 +468,7 @@ public final class Sort
         AnyType tmp = a[ index1 ];
         a[ index1 ] = a[ index2 ];
         a[ index2 ] = tmp;
+        SortMetrics.swap( );
     }
 
     /**
@@ -201,11 +479,11 @@ public final class Sort
     AnyType median3( AnyType [ ] a, int left, int right )
     {
         int center = ( left + right ) / 2;
-        if( a[ center ].compareTo( a[ left ] ) < 0 )
+        if( compare( a[ center ], a[ left ] ) < 0 )
             swapReferences( a, left, center );
-        if( a[ right ].compareTo( a[ left ] ) < 0 )
+        if( compare( a[ right ], a[ left ] ) < 0 )
             swapReferences( a, left, right );
-        if( a[ right ].compareTo( a[ center ] ) < 0 )
+        if( compare( a[ right ], a[ center ] ) < 0 )
             swapReferences( a, center, right );
 
             // Place pivot at position right - 1
@@ -213,6 +491,35 @@ public final class Sort
         return a[ right - 1 ];
     }
 
+    /**
+     * Internal method that partitions a subarray of at least
+     * CUTOFF + 1 items around a median-of-three pivot.
+     * @param a an array of Comparable items.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     * @return the final index of the pivot.
+     */
+    static <AnyType extends Comparable<? super AnyType>>
+    int partition( AnyType [ ] a, int left, int right )
+    {
+        AnyType pivot = median3( a, left, right );
+
+            // Begin partitioning
+        int i = left, j = right - 1;
+        for( ; ; )
+        {
+            while( compare( a[ ++i ], pivot ) < 0 ) { }
+            while( compare( a[ --j ], pivot ) > 0 ) { }
+            if( i < j )
+                swapReferences( a, i, j );
+            else
+                break;
+        }
+
+        swapReferences( a, i, right - 1 );   // Restore pivot
+        return i;
+    }
+
     /**
      * Internal quicksort method that makes recursive calls.
      * Uses median-of-three partitioning and a cutoff of 10.
@@ -220,29 +527,17 @@ public final class Sort
      * @param left the left-most index of the subarray.
      * @param right the right-most index of the subarray.
      */
-    private static <AnyType extends Comparable<? super AnyType>>
+    static <AnyType extends Comparable<? super AnyType>>
     void quicksort( AnyType [ ] a, int left, int right )
     {
         if( left + CUTOFF <= right )
         {
-            AnyType pivot = median3( a, left, right );
-
-                // Begin partitioning
-            int i = left, j = right - 1;
-            for( ; ; )
-            {
-                while( a[ ++i ].compareTo( pivot ) < 0 ) { }
-                while( a[ --j ].compareTo( pivot ) > 0 ) { }
-                if( i < j )
-                    swapReferences( a, i, j );
-                else
-                    break;
-            }
-
-            swapReferences( a, i, right - 1 );   // Restore pivot
+            SortMetrics.enter( );
+            int i = partition( a, left, right );
 
             quicksort( a, left, i - 1 );    // Sort small elements
             quicksort( a, i + 1, right );   // Sort large elements
+            SortMetrics.exit( );
         }
         else  // Do an insertion sort on the subarray
             insertionSort( a, left, right );
@@ -255,7 +550,7 @@ public final class Sort
      * @param left the left-most index of the subarray.
      * @param right the right-most index of the subarray.
      */
-    private static <AnyType extends Comparable<? super AnyType>>
+    static <AnyType extends Comparable<? super AnyType>>
     void insertionSort( AnyType [ ] a, int left, int right )
     {
         for( int p = left + 1; p <= right; p++ )
@@ -263,9 +558,10 @@ public final class Sort
             AnyType tmp = a[ p ];
             int j;
 
-            for( j = p; j > left && tmp.compareTo( a[ j - 1 ] ) < 0; j-- )
+            for( j = p; j > left && compare( tmp, a[ j - 1 ] ) < 0; j-- )
                 a[ j ] = a[ j - 1 ];
             a[ j ] = tmp;
+            SortMetrics.moves( p - j + 1 );
         }
     }
 
@@ -295,21 +591,7 @@ public final class Sort
     {
         if( left + CUTOFF <= right )
         {
-            AnyType pivot = median3( a, left, right );
-
-                // Begin partitioning
-            int i = left, j = right - 1;
-            for( ; ; )
-            {
-                while( a[ ++i ].compareTo( pivot ) < 0 ) { }
-                while( a[ --j ].compareTo( pivot ) > 0 ) { }
-                if( i < j )
-                    swapReferences( a, i, j );
-                else
-                    break;
-            }
-
-            swapReferences( a, i, right - 1 );   // Restore pivot
+            int i = partition( a, left, right );
 
             if( k <= i )
                 quickSelect( a, left, i - 1, k );
@@ -346,11 +628,11 @@ public final class Sort
 
     // Some tests of the sorting algorithms
     private static final int NUM_ITEMS = 100000;
-    private static int theSeed = 0;
+    private static final AtomicLong theSeed = new AtomicLong( );
     
     public static void Random_Intgenerator(Integer[] a)
 	{
-    	Random rand = new Random(System.currentTimeMillis());
+    	Random rand = new Random(theSeed.getAndIncrement());
 		for (int i=0; i<a.length; i++)
 		{
 			a[i] = rand.nextInt(NUM_ITEMS * 5);
@@ -367,6 +649,16 @@ public final class Sort
     	return System.nanoTime() - time_start;
 	}
     
+    public static long  Measure_inPlaceMergeSort(Integer[] a)
+	{
+    	long time_start;
+    	
+    	Random_Intgenerator(a);
+    	time_start = System.nanoTime();
+    	Sort.inPlaceMergeSort(a);
+    	return System.nanoTime() - time_start;
+	}
+    
     public static long  Measure_quickSort(Integer[] a)
 	{
     	long time_start;
@@ -397,6 +689,16 @@ public final class Sort
     	return System.nanoTime() - time_start;
 	}
     
+    public static long  Measure_countingSort(Integer[] a)
+	{
+    	long time_start;
+    	
+    	Random_Intgenerator(a);
+    	time_start = System.nanoTime();
+    	CountingSort.sort(a, Integer::intValue);
+    	return System.nanoTime() - time_start;
+	}
+    
     public static void main( String [ ] args )
     {
         Integer [ ] a = new Integer[ NUM_ITEMS ];
@@ -412,6 +714,14 @@ public final class Sort
         }
         System.out.println("The mergesort time is " + total_time / 10);
         
+        total_time = 0;
+        for (int i=0; i<10; i++)
+        {
+        	total_time += Measure_inPlaceMergeSort(a);
+        	checkSort(a);
+        }
+        System.out.println("The in-place mergesort time is " + total_time / 10);
+        
         total_time = 0;
         for (int i=0; i<10; i++)
         {
@@ -435,6 +745,14 @@ public final class Sort
         	checkSort(a);
         }
         System.out.println("The dualpivotSort time is " + total_time / 10);
+        
+        total_time = 0;
+        for (int i=0; i<10; i++)
+        {
+        	total_time += Measure_countingSort(a);
+        	checkSort(a);
+        }
+        System.out.println("The counting sort time is " + total_time / 10);
 //        // Fill array a with random numbers
 //        for( int i = 0; i < a.length; i++ )
 //            a[i] = rand.nextInt(NUM_ITEMS * 5);
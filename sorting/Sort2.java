@@ -4,147 +4,99 @@ import java.util.Random;
 import java.util.Arrays;
 
 /**
- * A class that contains several sorting routines,
+ * String sorting routines and their timing harness,
  * implemented as static methods.
  * Arrays are rearranged with smallest item first,
- * using compareTo.
+ * using compareTo. The comparison sorts themselves are the
+ * String-specialized engines generated into StringSort.
  * @author Mark Allen Weiss
  */
 public final class Sort2
 {
     /**
-     * Simple insertion sort.
-     * @param a an array of Comparable items.
+     * Mergesort for Strings using abbreviated keys.
+     * The leading characters of every string are packed into a long,
+     * so most comparisons never touch the strings themselves;
+     * compareTo is only called when the packed prefixes are equal.
+     * The result is the same as StringSort.mergeSort( a ).
+     * @param a an array of Strings.
      */
-    public static <AnyType extends Comparable<? super AnyType>>
-    void insertionSort( AnyType [ ] a )
+    public static void keyCacheMergeSort( String [ ] a )
     {
-        int j;
-
-        for( int p = 1; p < a.length; p++ )
-        {
-            AnyType tmp = a[ p ];
-            for( j = p; j > 0 && tmp.compareTo( a[ j - 1 ] ) < 0; j-- )
-                a[ j ] = a[ j - 1 ];
-            a[ j ] = tmp;
-        }
-    }
-
-    /**
-     * Shellsort, using Shell's (poor) increments.
-     * @param a an array of Comparable items.
-     */
-    public static <AnyType extends Comparable<? super AnyType>>
-    void shellsort( AnyType [ ] a )
-    {
-        int j;
-
-        for( int gap = a.length / 2; gap > 0; gap /= 2 )
-            for( int i = gap; i < a.length; i++ )
-            {
-                AnyType tmp = a[ i ];
-                for( j = i; j >= gap &&
-                            tmp.compareTo( a[ j - gap ] ) < 0; j -= gap )
-                    a[ j ] = a[ j - gap ];
-                a[ j ] = tmp;
-            }
-    }
+        int n = a.length;
+        long [ ] keys = new long[ n ];
+
+            // 8 characters fit when all leading characters are Latin-1, otherwise 4;
+            // only the characters that go into a key are checked
+        int bits = 8;
+        for( int i = 0; i < n && bits == 8; i++ )
+            for( int j = 0, len = Math.min( a[ i ].length( ), 8 ); j < len; j++ )
+                if( a[ i ].charAt( j ) > 0xFF )
+                {
+                    bits = 16;
+                    break;
+                }
 
+        for( int i = 0; i < n; i++ )
+            keys[ i ] = abbreviate( a[ i ], bits );
 
-    /**
-     * Internal method for heapsort.
-     * @param i the index of an item in the heap.
-     * @return the index of the left child.
-     */
-    private static int leftChild( int i )
-    {
-        return 2 * i + 1;
+        keyCacheMergeSort( a, keys, new String[ n ], new long[ n ], 0, n - 1 );
     }
-    
-    /**
-     * Internal method for heapsort that is used in deleteMax and buildHeap.
-     * @param a an array of Comparable items.
-     * @index i the position from which to percolate down.
-     * @int n the logical size of the binary heap.
-     */
-    private static <AnyType extends Comparable<? super AnyType>>
-    void percDown( AnyType [ ] a, int i, int n )
-    {
-        int child;
-        AnyType tmp;
 
-        for( tmp = a[ i ]; leftChild( i ) < n; i = child )
-        {
-            child = leftChild( i );
-            if( child != n - 1 && a[ child ].compareTo( a[ child + 1 ] ) < 0 )
-                child++;
-            if( tmp.compareTo( a[ child ] ) < 0 )
-                a[ i ] = a[ child ];
-            else
-                break;
-        }
-        a[ i ] = tmp;
-    }
-    
     /**
-     * Standard heapsort.
-     * @param a an array of Comparable items.
+     * Pack the leading characters of s into a long, left aligned and
+     * padded with zeros, with the sign bit flipped so that signed
+     * comparison of two keys agrees with compareTo of their prefixes.
+     * @param s the string.
+     * @param bits the number of bits per character, 8 or 16.
      */
-    public static <AnyType extends Comparable<? super AnyType>>
-    void heapsort( AnyType [ ] a )
+    private static long abbreviate( String s, int bits )
     {
-        for( int i = a.length / 2 - 1; i >= 0; i-- )  /* buildHeap */
-            percDown( a, i, a.length );
-        for( int i = a.length - 1; i > 0; i-- )
-        {
-            swapReferences( a, 0, i );                /* deleteMax */
-            percDown( a, 0, i );
-        }
-    }
+        long key = 0;
+        int chars = 64 / bits;
+        int len = Math.min( s.length( ), chars );
 
+        for( int i = 0; i < len; i++ )
+            key = ( key << bits ) | s.charAt( i );
+        key <<= bits * ( chars - len );
 
-    /**
-     * Mergesort algorithm.
-     * @param a an array of Comparable items.
-     */
-    public static <AnyType extends Comparable<? super AnyType>>
-    void mergeSort( AnyType [ ] a )
-    {
-        AnyType [ ] tmpArray = (AnyType[]) new Comparable[ a.length ];
-
-        mergeSort( a, tmpArray, 0, a.length - 1 );
+        return key ^ Long.MIN_VALUE;
     }
 
     /**
      * Internal method that makes recursive calls.
-     * @param a an array of Comparable items.
+     * @param a an array of Strings.
+     * @param keys the abbreviated keys of a.
      * @param tmpArray an array to place the merged result.
+     * @param tmpKeys an array to place the merged keys.
      * @param left the left-most index of the subarray.
      * @param right the right-most index of the subarray.
      */
-    private static <AnyType extends Comparable<? super AnyType>>
-    void mergeSort( AnyType [ ] a, AnyType [ ] tmpArray,
-               int left, int right )
+    private static void keyCacheMergeSort( String [ ] a, long [ ] keys,
+               String [ ] tmpArray, long [ ] tmpKeys, int left, int right )
     {
         if( left < right )
         {
             int center = ( left + right ) / 2;
-            mergeSort( a, tmpArray, left, center );
-            mergeSort( a, tmpArray, center + 1, right );
-            merge( a, tmpArray, left, center + 1, right );
+            keyCacheMergeSort( a, keys, tmpArray, tmpKeys, left, center );
+            keyCacheMergeSort( a, keys, tmpArray, tmpKeys, center + 1, right );
+            keyCacheMerge( a, keys, tmpArray, tmpKeys, left, center + 1, right );
         }
     }
 
     /**
-     * Internal method that merges two sorted halves of a subarray.
-     * @param a an array of Comparable items.
+     * Internal method that merges two sorted halves of a subarray,
+     * moving the abbreviated keys along with the strings.
+     * @param a an array of Strings.
+     * @param keys the abbreviated keys of a.
      * @param tmpArray an array to place the merged result.
+     * @param tmpKeys an array to place the merged keys.
      * @param leftPos the left-most index of the subarray.
      * @param rightPos the index of the start of the second half.
      * @param rightEnd the right-most index of the subarray.
      */
-    private static <AnyType extends Comparable<? super AnyType>>
-    void merge( AnyType [ ] a, AnyType [ ] tmpArray, int leftPos, int rightPos, int rightEnd )
+    private static void keyCacheMerge( String [ ] a, long [ ] keys, String [ ] tmpArray,
+               long [ ] tmpKeys, int leftPos, int rightPos, int rightEnd )
     {
         int leftEnd = rightPos - 1;
         int tmpPos = leftPos;
@@ -152,172 +104,41 @@ public final class Sort2
 
         // Main loop
         while( leftPos <= leftEnd && rightPos <= rightEnd )
-            if( a[ leftPos ].compareTo( a[ rightPos ] ) <= 0 )
+        {
+            long leftKey = keys[ leftPos ];
+            long rightKey = keys[ rightPos ];
+
+            if( leftKey < rightKey || ( leftKey == rightKey &&
+                        a[ leftPos ].compareTo( a[ rightPos ] ) <= 0 ) )
+            {
+                tmpKeys[ tmpPos ] = leftKey;
                 tmpArray[ tmpPos++ ] = a[ leftPos++ ];
+            }
             else
+            {
+                tmpKeys[ tmpPos ] = rightKey;
                 tmpArray[ tmpPos++ ] = a[ rightPos++ ];
+            }
+        }
 
         while( leftPos <= leftEnd )    // Copy rest of first half
+        {
+            tmpKeys[ tmpPos ] = keys[ leftPos ];
             tmpArray[ tmpPos++ ] = a[ leftPos++ ];
+        }
 
         while( rightPos <= rightEnd )  // Copy rest of right half
+        {
+            tmpKeys[ tmpPos ] = keys[ rightPos ];
             tmpArray[ tmpPos++ ] = a[ rightPos++ ];
+        }
 
         // Copy tmpArray back
         for( int i = 0; i < numElements; i++, rightEnd-- )
-            a[ rightEnd ] = tmpArray[ rightEnd ];
-    }
-
-    /**
-     * Quicksort algorithm.
-     * @param a an array of Comparable items.
-     */
-    public static <AnyType extends Comparable<? super AnyType>>
-    void quicksort( AnyType [ ] a )
-    {
-        quicksort( a, 0, a.length - 1 );
-    }
-
-    private static final int CUTOFF = 3;
-
-    /**
-     * Method to swap to elements in an array.
-     * @param a an array of objects.
-     * @param index1 the index of the first object.
-     * @param index2 the index of the second object.
-     */
-    public static <AnyType> void swapReferences( AnyType [ ] a, int index1, int index2 )
-    {
-        AnyType tmp = a[ index1 ];
-        a[ index1 ] = a[ index2 ];
-        a[ index2 ] = tmp;
-    }
-
-    /**
-     * Return median of left, center, and right.
-     * Order these and hide the pivot.
-     */
-    private static <AnyType extends Comparable<? super AnyType>>
-    AnyType median3( AnyType [ ] a, int left, int right )
-    {
-        int center = ( left + right ) / 2;
-        if( a[ center ].compareTo( a[ left ] ) < 0 )
-            swapReferences( a, left, center );
-        if( a[ right ].compareTo( a[ left ] ) < 0 )
-            swapReferences( a, left, right );
-        if( a[ right ].compareTo( a[ center ] ) < 0 )
-            swapReferences( a, center, right );
-
-            // Place pivot at position right - 1
-        swapReferences( a, center, right - 1 );
-        return a[ right - 1 ];
-    }
-
-    /**
-     * Internal quicksort method that makes recursive calls.
-     * Uses median-of-three partitioning and a cutoff of 10.
-     * @param a an array of Comparable items.
-     * @param left the left-most index of the subarray.
-     * @param right the right-most index of the subarray.
-     */
-    private static <AnyType extends Comparable<? super AnyType>>
-    void quicksort( AnyType [ ] a, int left, int right )
-    {
-        if( left + CUTOFF <= right )
-        {
-            AnyType pivot = median3( a, left, right );
-
-                // Begin partitioning
-            int i = left, j = right - 1;
-            for( ; ; )
-            {
-                while( a[ ++i ].compareTo( pivot ) < 0 ) { }
-                while( a[ --j ].compareTo( pivot ) > 0 ) { }
-                if( i < j )
-                    swapReferences( a, i, j );
-                else
-                    break;
-            }
-
-            swapReferences( a, i, right - 1 );   // Restore pivot
-
-            quicksort( a, left, i - 1 );    // Sort small elements
-            quicksort( a, i + 1, right );   // Sort large elements
-        }
-        else  // Do an insertion sort on the subarray
-            insertionSort( a, left, right );
-    }
-
-    /**
-     * Internal insertion sort routine for subarrays
-     * that is used by quicksort.
-     * @param a an array of Comparable items.
-     * @param left the left-most index of the subarray.
-     * @param right the right-most index of the subarray.
-     */
-    private static <AnyType extends Comparable<? super AnyType>>
-    void insertionSort( AnyType [ ] a, int left, int right )
-    {
-        for( int p = left + 1; p <= right; p++ )
         {
-            AnyType tmp = a[ p ];
-            int j;
-
-            for( j = p; j > left && tmp.compareTo( a[ j - 1 ] ) < 0; j-- )
-                a[ j ] = a[ j - 1 ];
-            a[ j ] = tmp;
-        }
-    }
-
-    /**
-     * Quick selection algorithm.
-     * Places the kth smallest item in a[k-1].
-     * @param a an array of Comparable items.
-     * @param k the desired rank (1 is minimum) in the entire array.
-     */     
-    public static <AnyType extends Comparable<? super AnyType>>
-    void quickSelect( AnyType [ ] a, int k )
-    {
-        quickSelect( a, 0, a.length - 1, k );
-    }
-
-    /**
-     * Internal selection method that makes recursive calls.
-     * Uses median-of-three partitioning and a cutoff of 10.
-     * Places the kth smallest item in a[k-1].
-     * @param a an array of Comparable items.
-     * @param left the left-most index of the subarray.
-     * @param right the right-most index of the subarray.
-     * @param k the desired index (1 is minimum) in the entire array.
-     */
-    private static <AnyType extends Comparable<? super AnyType>>
-    void quickSelect( AnyType [ ] a, int left, int right, int k )
-    {
-        if( left + CUTOFF <= right )
-        {
-            AnyType pivot = median3( a, left, right );
-
-                // Begin partitioning
-            int i = left, j = right - 1;
-            for( ; ; )
-            {
-                while( a[ ++i ].compareTo( pivot ) < 0 ) { }
-                while( a[ --j ].compareTo( pivot ) > 0 ) { }
-                if( i < j )
-                    swapReferences( a, i, j );
-                else
-                    break;
-            }
-
-            swapReferences( a, i, right - 1 );   // Restore pivot
-
-            if( k <= i )
-                quickSelect( a, left, i - 1, k );
-            else if( k > i + 1 )
-                quickSelect( a, i + 1, right, k );
+            keys[ rightEnd ] = tmpKeys[ rightEnd ];
+            a[ rightEnd ] = tmpArray[ rightEnd ];
         }
-        else  // Do an insertion sort on the subarray
-            insertionSort( a, left, right );
     }
 
 
@@ -363,7 +184,7 @@ public final class Sort2
     	
     	//Random_Intgenerator(a, length);
     	time_start = System.nanoTime();
-    	Sort2.mergeSort(a);
+    	StringSort.mergeSort(a);
     	return System.nanoTime() - time_start;
 	}
     
@@ -373,7 +194,7 @@ public final class Sort2
     	
     	//Random_Intgenerator(a, length);
     	time_start = System.nanoTime();
-    	Sort2.mergeSort(a);
+    	StringSort.mergeSort(a);
     	return System.nanoTime() - time_start;
 	}
     
@@ -383,7 +204,16 @@ public final class Sort2
     	
     	//Random_Intgenerator(a, length);
     	time_start = System.nanoTime();
-    	Sort2.heapsort(a);
+    	StringSort.heapsort(a);
+    	return System.nanoTime() - time_start;
+	}
+    
+    public static long  Measure_keyCacheMergeSort(String[] a)
+	{
+    	long time_start;
+    	
+    	time_start = System.nanoTime();
+    	Sort2.keyCacheMergeSort(a);
     	return System.nanoTime() - time_start;
 	}
     
@@ -399,9 +229,9 @@ public final class Sort2
     
     public static void  Measure_sorttime(String[] a, int length)
    	{
-    	long total_time1 = 0, total_time2 = 0, total_time3 = 0, total_time4 = 0;
+    	long total_time1 = 0, total_time2 = 0, total_time3 = 0, total_time4 = 0, total_time5 = 0;
        	
-    	String[] a1 = new String[a.length], a2 = new String[a.length], a3 = new String[a.length], a4 = new String[a.length];
+    	String[] a1 = new String[a.length], a2 = new String[a.length], a3 = new String[a.length], a4 = new String[a.length], a5 = new String[a.length];
     	
     	
     	
@@ -413,20 +243,24 @@ public final class Sort2
         	a2 = a.clone();
         	a3 = a.clone();
         	a4 = a.clone();
+        	a5 = a.clone();
         	total_time1 += Measure_mergeSort(a1);
         	total_time2 += Measure_quickSort(a2);
         	total_time3 += Measure_heapSort(a3);
         	total_time4 += Measure_dualpivotSort(a4);
+        	total_time5 += Measure_keyCacheMergeSort(a5);
         	checkSort(a1);
         	checkSort(a2);
         	checkSort(a3);
         	checkSort(a4);
+        	checkSort(a5);
         }
         
         System.out.println("The mergesort time for length " + length + " is " + total_time1 / 10);
         System.out.println("The quicksort time for  length " + length + " is " + total_time2 / 10);
         System.out.println("The heapsort time for length " + length + " is " + total_time3 / 10);
         System.out.println("The dualpivotSort time for length " + length + " is " + total_time4 / 10);
+        System.out.println("The key cache mergesort time for length " + length + " is " + total_time5 / 10);
         
    	}
     
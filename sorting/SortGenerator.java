@@ -0,0 +1,91 @@
+package sorting;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Generates type-specialized copies of the sort engines from
+ * SortEngine.template, one per key type and ordering. Each copy compares
+ * with an expression for one concrete type and comparator, so its
+ * comparison call sites stay monomorphic and are inlined, however many
+ * types and comparators the generic engines also see.
+ * To specialize another key type or comparator, add a row to SPECS and
+ * rerun the generator; commit the generated sources with it.
+ * Run from the source root as: java sorting.SortGenerator [dir] [--check]
+ * With --check nothing is written; the exit status is 1 if any
+ * generated file is out of date.
+ */
+public final class SortGenerator
+{
+    private static final String TEMPLATE = "SortEngine.template";
+
+    // Class name, element type, ordering, comparison of x and y,
+    // random element from rnd, and the generic sort of a it is timed against
+    private static final String [ ] [ ] SPECS = {
+        { "IntegerSort", "Integer", "natural order", "Integer.compare( x, y )",
+          "rnd.nextInt( )", "Sort.mergeSort( a )" },
+        { "LongSort", "Long", "natural order", "Long.compare( x, y )",
+          "rnd.nextLong( )", "Sort.mergeSort( a )" },
+        { "StringSort", "String", "natural order", "x.compareTo( y )",
+          "Long.toString( rnd.nextLong( ), 36 )", "Sort.mergeSort( a )" },
+        { "LongDescendingSort", "Long", "descending order", "Long.compare( y, x )",
+          "rnd.nextLong( )", "Arrays.sort( a, Comparator.reverseOrder( ) )" },
+        { "StringIgnoreCaseSort", "String", "String.CASE_INSENSITIVE_ORDER",
+          "String.CASE_INSENSITIVE_ORDER.compare( x, y )",
+          "Long.toString( rnd.nextLong( ), 36 ).toUpperCase( ) + Long.toString( rnd.nextLong( ), 36 )",
+          "Arrays.sort( a, String.CASE_INSENSITIVE_ORDER )" }
+    };
+
+    private SortGenerator( )
+    {
+    }
+
+    /**
+     * Return the source of one specialized engine.
+     * @param template the template text.
+     * @param spec a row of SPECS.
+     */
+    static String generate( String template, String [ ] spec )
+    {
+        return template.replace( "$CLASS$", spec[ 0 ] )
+                       .replace( "$TYPE$", spec[ 1 ] )
+                       .replace( "$ORDER$", spec[ 2 ] )
+                       .replace( "$COMPARE$", spec[ 3 ] )
+                       .replace( "$RANDOM$", spec[ 4 ] )
+                       .replace( "$GENERIC$", spec[ 5 ] );
+    }
+
+    public static void main( String [ ] args ) throws IOException
+    {
+        Path dir = Paths.get( args.length > 0 && !args[ 0 ].startsWith( "--" ) ? args[ 0 ] : "sorting" );
+        boolean check = args.length > 0 && args[ args.length - 1 ].equals( "--check" );
+
+        String template = new String( Files.readAllBytes( dir.resolve( TEMPLATE ) ), StandardCharsets.UTF_8 );
+        boolean stale = false;
+        for( String [ ] spec : SPECS )
+        {
+            Path out = dir.resolve( spec[ 0 ] + ".java" );
+            byte [ ] source = generate( template, spec ).getBytes( StandardCharsets.UTF_8 );
+
+            if( check )
+            {
+                if( !Files.exists( out ) || !Arrays.equals( Files.readAllBytes( out ), source ) )
+                {
+                    System.out.println( out + " is out of date" );
+                    stale = true;
+                }
+            }
+            else
+            {
+                Files.write( out, source );
+                System.out.println( "Wrote " + out );
+            }
+        }
+        if( stale )
+            System.exit( 1 );
+    }
+}
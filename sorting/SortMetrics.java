@@ -0,0 +1,240 @@
+package sorting;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Optional counters for the sorting routines: comparisons, swaps, moves,
+ * maximum recursion depth, radix passes and scratch bytes allocated.
+ * Counting is switched on with -Dsorting.metrics=true. Otherwise ENABLED is
+ * a false constant, every hook below compiles to nothing once inlined,
+ * and the sorts run as if they were not instrumented.
+ * When enabled, the counts of each top-level sort call are handed to the
+ * registered Listener when the call returns.
+ */
+public final class SortMetrics
+{
+    public static final boolean ENABLED = Boolean.getBoolean( "sorting.metrics" );
+
+    // Scratch bytes are estimated assuming compressed references
+    static final int REFERENCE_BYTES = 4;
+
+    /**
+     * Receives the counts of each finished sort call.
+     */
+    public interface Listener
+    {
+        void record( String algorithm, int n, Counters counters );
+    }
+
+    /**
+     * The counts of one sort call.
+     */
+    public static final class Counters
+    {
+        private long comparisons;
+        private long swaps;
+        private long moves;
+        private long passes;
+        private long scratchBytes;
+        private int depth;
+        private int maxDepth;
+        private int nesting;
+
+        public long getComparisons( ) { return comparisons; }
+        public long getSwaps( ) { return swaps; }
+        public long getMoves( ) { return moves; }
+        public long getPasses( ) { return passes; }
+        public long getScratchBytes( ) { return scratchBytes; }
+        public int getMaxDepth( ) { return maxDepth; }
+
+        private void reset( )
+        {
+            comparisons = swaps = moves = passes = scratchBytes = 0;
+            depth = maxDepth = 0;
+        }
+
+        private Counters copy( )
+        {
+            Counters c = new Counters( );
+            c.comparisons = comparisons;
+            c.swaps = swaps;
+            c.moves = moves;
+            c.passes = passes;
+            c.scratchBytes = scratchBytes;
+            c.maxDepth = maxDepth;
+            return c;
+        }
+
+        public String toString( )
+        {
+            return "comparisons=" + comparisons + " swaps=" + swaps + " moves=" + moves
+                 + " passes=" + passes + " scratchBytes=" + scratchBytes + " maxDepth=" + maxDepth;
+        }
+    }
+
+    private static final ThreadLocal<Counters> CURRENT = new ThreadLocal<Counters>( )
+    {
+        protected Counters initialValue( )
+        {
+            return new Counters( );
+        }
+    };
+
+    private static volatile Listener listener;
+
+    /**
+     * Register the listener that receives the counts; null to drop them.
+     */
+    public static void setListener( Listener l )
+    {
+        listener = l;
+    }
+
+    /**
+     * Start counting a sort call. Calls made from inside
+     * another instrumented sort are counted as part of it.
+     */
+    static void begin( )
+    {
+        if( ENABLED )
+        {
+            Counters c = CURRENT.get( );
+            if( c.nesting++ == 0 )
+                c.reset( );
+        }
+    }
+
+    /**
+     * Finish a sort call and, at the outermost level, publish its counts.
+     * @param algorithm the name of the sort.
+     * @param n the number of items sorted.
+     */
+    static void end( String algorithm, int n )
+    {
+        if( ENABLED )
+        {
+            Counters c = CURRENT.get( );
+            Listener l = listener;
+            if( --c.nesting == 0 && l != null )
+                l.record( algorithm, n, c.copy( ) );
+        }
+    }
+
+    static void comparison( )
+    {
+        if( ENABLED )
+            CURRENT.get( ).comparisons++;
+    }
+
+    static void swap( )
+    {
+        if( ENABLED )
+            CURRENT.get( ).swaps++;
+    }
+
+    static void moves( long count )
+    {
+        if( ENABLED )
+            CURRENT.get( ).moves += count;
+    }
+
+    static void pass( )
+    {
+        if( ENABLED )
+            CURRENT.get( ).passes++;
+    }
+
+    static void scratch( long bytes )
+    {
+        if( ENABLED )
+            CURRENT.get( ).scratchBytes += bytes;
+    }
+
+    static void enter( )
+    {
+        if( ENABLED )
+        {
+            Counters c = CURRENT.get( );
+            if( ++c.depth > c.maxDepth )
+                c.maxDepth = c.depth;
+        }
+    }
+
+    static void exit( )
+    {
+        if( ENABLED )
+            CURRENT.get( ).depth--;
+    }
+
+    /**
+     * A histogram with power-of-2 buckets: bucket b counts values
+     * v with 2^(b-1) <= v < 2^b, and bucket 0 counts zeros.
+     */
+    public static final class Histogram
+    {
+        private final AtomicLongArray buckets = new AtomicLongArray( 65 );
+
+        public void record( long value )
+        {
+            buckets.incrementAndGet( 64 - Long.numberOfLeadingZeros( Math.max( value, 0 ) ) );
+        }
+
+        /**
+         * Return the number of values recorded in bucket b.
+         */
+        public long getCount( int b )
+        {
+            return buckets.get( b );
+        }
+
+        public String toString( )
+        {
+            StringBuilder sb = new StringBuilder( );
+            for( int b = 0; b < 65; b++ )
+            {
+                long count = buckets.get( b );
+                if( count != 0 )
+                    sb.append( b == 0 ? "0" : "<2^" + b ).append( ':' ).append( count ).append( ' ' );
+            }
+            return sb.toString( ).trim( );
+        }
+    }
+
+    /**
+     * A listener that keeps one histogram per algorithm and counter.
+     */
+    public static final class HistogramRecorder implements Listener
+    {
+        private final Map<String, Histogram> histograms = new ConcurrentHashMap<>( );
+
+        public void record( String algorithm, int n, Counters c )
+        {
+            histogram( algorithm, "n" ).record( n );
+            histogram( algorithm, "comparisons" ).record( c.comparisons );
+            histogram( algorithm, "swaps" ).record( c.swaps );
+            histogram( algorithm, "moves" ).record( c.moves );
+            histogram( algorithm, "passes" ).record( c.passes );
+            histogram( algorithm, "scratchBytes" ).record( c.scratchBytes );
+            histogram( algorithm, "maxDepth" ).record( c.maxDepth );
+        }
+
+        /**
+         * Return the histogram of one counter of one algorithm.
+         */
+        public Histogram histogram( String algorithm, String counter )
+        {
+            return histograms.computeIfAbsent( algorithm + "." + counter, k -> new Histogram( ) );
+        }
+
+        public String toString( )
+        {
+            StringBuilder sb = new StringBuilder( );
+            for( Map.Entry<String, Histogram> e : new TreeMap<>( histograms ).entrySet( ) )
+                sb.append( e.getKey( ) ).append( ' ' ).append( e.getValue( ) ).append( '\n' );
+            return sb.toString( );
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package sorting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A service that sorts independent batches concurrently.
+ * Jobs run on a caller-supplied executor (for example a bounded pool,
+ * or Executors.newVirtualThreadPerTaskExecutor() on Java 21 and later).
+ * No completion order is promised: larger jobs are handed to the executor
+ * at once, while jobs smaller than the coalescing threshold are collected
+ * and run together as one later task, so a burst of tiny batches does not
+ * pay one executor hand-off each.
+ * Every batch is sorted in place with Sort.mergeSort.
+ */
+public final class SortService implements AutoCloseable
+{
+    private static final int DEFAULT_COALESCE_THRESHOLD = 1024;
+    private static final int LATENCY_SAMPLES = 8192;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int coalesceThreshold;
+
+    private final Object lock = new Object( );
+    private List<Job<?>> pending = new ArrayList<>( );
+
+    private final AtomicInteger queueDepth = new AtomicInteger( );
+    private final LongAdder completedJobs = new LongAdder( );
+    private final LongAdder failedJobs = new LongAdder( );
+    private final LongAdder totalLatency = new LongAdder( );
+    private final AtomicLong maxLatency = new AtomicLong( );
+
+    // The latencies of the most recent jobs, for percentiles
+    private final long [ ] latencySamples = new long[ LATENCY_SAMPLES ];
+    private long latencyCount;
+
+    /**
+     * Construct a service on the given executor.
+     * The executor is not shut down by close.
+     * @param executor the executor that runs the jobs.
+     * @param coalesceThreshold jobs with fewer items than this are coalesced.
+     */
+    public SortService( Executor executor, int coalesceThreshold )
+    {
+        this( executor, null, coalesceThreshold );
+    }
+
+    private SortService( Executor executor, ExecutorService ownedExecutor, int coalesceThreshold )
+    {
+        if( executor == null )
+            throw new NullPointerException( "executor" );
+        this.executor = executor;
+        this.ownedExecutor = ownedExecutor;
+        this.coalesceThreshold = coalesceThreshold;
+    }
+
+    /**
+     * Construct a service on its own pool of a fixed number of threads.
+     * The pool is shut down by close.
+     * @param threads the number of sorting threads.
+     */
+    public static SortService withBoundedPool( int threads )
+    {
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        return new SortService( pool, pool, DEFAULT_COALESCE_THRESHOLD );
+    }
+
+    /**
+     * Submit a batch to be sorted in place.
+     * @param a an array of Comparable items; it must not be touched until the future completes.
+     * @return a future that completes with a once it is sorted.
+     */
+    public <AnyType extends Comparable<? super AnyType>>
+    CompletableFuture<AnyType [ ]> submit( AnyType [ ] a )
+    {
+        Job<AnyType> job = new Job<>( a );
+        queueDepth.incrementAndGet( );
+
+        if( a.length >= coalesceThreshold )
+        {
+            try
+            {
+                executor.execute( job::run );
+            }
+            catch( RejectedExecutionException e )
+            {
+                job.reject( e );
+            }
+            return job.future;
+        }
+
+        boolean schedule;
+        synchronized( lock )
+        {
+            schedule = pending.isEmpty( );
+            pending.add( job );
+        }
+        if( schedule )
+        {
+            try
+            {
+                executor.execute( this::drainPending );
+            }
+            catch( RejectedExecutionException e )
+            {
+                for( Job<?> rejected : takePending( ) )
+                    rejected.reject( e );
+            }
+        }
+        return job.future;
+    }
+
+    /**
+     * Remove and return the tiny jobs collected so far.
+     */
+    private List<Job<?>> takePending( )
+    {
+        synchronized( lock )
+        {
+            List<Job<?>> batch = pending;
+            pending = new ArrayList<>( );
+            return batch;
+        }
+    }
+
+    /**
+     * Run every tiny job collected since the last drain.
+     */
+    private void drainPending( )
+    {
+        List<Job<?>> batch = takePending( );
+        for( int i = 0; i < batch.size( ); i++ )
+        {
+            try
+            {
+                batch.get( i ).run( );
+            }
+            catch( Error e )
+            {
+                for( Job<?> job : batch.subList( i + 1, batch.size( ) ) )
+                    job.fail( e );
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Return the number of jobs submitted but not yet started.
+     */
+    public int getQueueDepth( )
+    {
+        return queueDepth.get( );
+    }
+
+    /**
+     * Return the number of jobs that finished, successfully or not.
+     */
+    public long getCompletedJobs( )
+    {
+        return completedJobs.sum( );
+    }
+
+    /**
+     * Return the number of jobs whose sort threw an exception.
+     */
+    public long getFailedJobs( )
+    {
+        return failedJobs.sum( );
+    }
+
+    /**
+     * Return the mean time from submit to completion, in nanoseconds.
+     */
+    public long getMeanLatencyNanos( )
+    {
+        long completed = completedJobs.sum( );
+        return completed == 0 ? 0 : totalLatency.sum( ) / completed;
+    }
+
+    /**
+     * Return the longest time from submit to completion, in nanoseconds.
+     */
+    public long getMaxLatencyNanos( )
+    {
+        return maxLatency.get( );
+    }
+
+    /**
+     * Return a percentile of the time from submit to completion, in
+     * nanoseconds, over the last 8192 finished jobs.
+     * @param percentile the percentile, from 0 to 100; 50 is the median.
+     * @return the latency, or 0 if no job has finished.
+     */
+    public long getLatencyPercentileNanos( double percentile )
+    {
+        if( percentile < 0 || percentile > 100 )
+            throw new IllegalArgumentException( "percentile out of range: " + percentile );
+
+        long [ ] samples;
+        synchronized( latencySamples )
+        {
+            samples = Arrays.copyOf( latencySamples, (int) Math.min( latencyCount, LATENCY_SAMPLES ) );
+        }
+        if( samples.length == 0 )
+            return 0;
+
+        RadixSort.radixSort( samples );
+        int rank = (int) Math.ceil( percentile / 100 * samples.length );
+        return samples[ Math.max( rank - 1, 0 ) ];
+    }
+
+    /**
+     * Shut down the pool if this service created it.
+     * Jobs already submitted still run.
+     */
+    public void close( )
+    {
+        if( ownedExecutor != null )
+            ownedExecutor.shutdown( );
+    }
+
+    /**
+     * A submitted batch and its future.
+     */
+    private final class Job<AnyType extends Comparable<? super AnyType>>
+    {
+        final AnyType [ ] a;
+        final CompletableFuture<AnyType [ ]> future = new CompletableFuture<>( );
+        final long submitTime = System.nanoTime( );
+
+        Job( AnyType [ ] a )
+        {
+            this.a = a;
+        }
+
+        void run( )
+        {
+            queueDepth.decrementAndGet( );
+            try
+            {
+                Sort.mergeSort( a );
+                record( );
+                future.complete( a );
+            }
+            catch( RuntimeException e )
+            {
+                failedJobs.increment( );
+                record( );
+                future.completeExceptionally( e );
+            }
+            catch( Error e )
+            {
+                    // Fail the future so no caller waits forever, but let the Error through
+                failedJobs.increment( );
+                record( );
+                future.completeExceptionally( e );
+                throw e;
+            }
+        }
+
+        /**
+         * Fail a job that will never run because an earlier job in its
+         * batch threw an Error.
+         */
+        void fail( Error e )
+        {
+            queueDepth.decrementAndGet( );
+            failedJobs.increment( );
+            record( );
+            future.completeExceptionally( e );
+        }
+
+        void reject( RejectedExecutionException e )
+        {
+            queueDepth.decrementAndGet( );
+            future.completeExceptionally( e );
+        }
+
+        private void record( )
+        {
+            long latency = System.nanoTime( ) - submitTime;
+            synchronized( latencySamples )
+            {
+                latencySamples[ (int) ( latencyCount++ % LATENCY_SAMPLES ) ] = latency;
+            }
+            totalLatency.add( latency );
+            maxLatency.accumulateAndGet( latency, Math::max );
+            completedJobs.increment( );
+        }
+    }
+
+    // Sort many small and medium batches through the service
+    public static void main( String [ ] args ) throws Exception
+    {
+        final int JOBS = 2000;
+
+        try( SortService service = withBoundedPool( Runtime.getRuntime( ).availableProcessors( ) ) )
+        {
+            List<CompletableFuture<Integer [ ]>> futures = new ArrayList<>( );
+            long start = System.nanoTime( );
+            for( int j = 0; j < JOBS; j++ )
+            {
+                Integer [ ] a = new Integer[ j % 10 == 0 ? 50000 : 100 ];
+                Sort.Random_Intgenerator( a );
+                futures.add( service.submit( a ) );
+            }
+            System.out.println( "Queue depth after submit: " + service.getQueueDepth( ) );
+
+            for( CompletableFuture<Integer [ ]> f : futures )
+            {
+                Integer [ ] a = f.get( );
+                for( int i = 0; i < a.length - 1; i++ )
+                    if( a[ i ] > a[ i + 1 ] )
+                        System.out.println( "Error at " + i );
+            }
+            System.out.println( "Total time: " + ( System.nanoTime( ) - start ) );
+            System.out.println( "Completed jobs: " + service.getCompletedJobs( ) );
+            System.out.println( "Mean latency: " + service.getMeanLatencyNanos( ) );
+            System.out.println( "p50 latency: " + service.getLatencyPercentileNanos( 50 ) );
+            System.out.println( "p99 latency: " + service.getLatencyPercentileNanos( 99 ) );
+            System.out.println( "Max latency: " + service.getMaxLatencyNanos( ) );
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package sorting;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Collectors and spliterators that connect the sort engines to
+ * java.util.stream. The collectors sort each thread's chunk with
+ * Sort.mergeSort in the combiner, so in a parallel stream the chunks are
+ * sorted concurrently, and the combiner merges them pairwise. Encounter
+ * order is kept for equal items. The spliterators report SORTED, SIZED
+ * and SUBSIZED, so downstream stages skip sorted( ) and split the
+ * array in place without copying it.
+ */
+public final class SortStreams
+{
+    private SortStreams( )
+    {
+    }
+
+    /**
+     * Return a collector that gathers the items into a sorted,
+     * unmodifiable list.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Collector<AnyType, ?, List<AnyType>> toSortedList( )
+    {
+        return Collector.of( Run<AnyType>::new, Run::add, Run::combine,
+                             r -> Collections.unmodifiableList( Arrays.asList( r.toArray( ) ) ) );
+    }
+
+    /**
+     * Return a collector that gathers the items into a sorted array.
+     * @param generator creates the result array of the requested length.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Collector<AnyType, ?, AnyType [ ]> toSortedArray( IntFunction<AnyType [ ]> generator )
+    {
+        return Collector.of( Run<AnyType>::new, Run::add, Run::combine, r -> {
+            AnyType [ ] items = r.toArray( );
+            AnyType [ ] result = generator.apply( items.length );
+            System.arraycopy( items, 0, result, 0, items.length );
+            return result;
+        } );
+    }
+
+    /**
+     * Return a collector that gathers the items into a sorted stream.
+     * The stream is backed by the collected array.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Collector<AnyType, ?, Stream<AnyType>> toSortedStream( )
+    {
+        return Collector.of( Run<AnyType>::new, Run::add, Run::combine,
+                             r -> StreamSupport.stream( new SortedSpliterator<>( r.toArray( ) ), false ) );
+    }
+
+    /**
+     * Sort an array in place and stream it.
+     * @param a an array of Comparable items.
+     * @param parallel whether to sort with SampleSort.parallelSort and
+     *        return a parallel stream.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Stream<AnyType> sortedStream( AnyType [ ] a, boolean parallel )
+    {
+        if( parallel )
+            SampleSort.parallelSort( a );
+        else
+            Sort.mergeSort( a );
+        return StreamSupport.stream( new SortedSpliterator<>( a ), parallel );
+    }
+
+    /**
+     * Return a spliterator over an array that is already sorted.
+     * @param a an array of Comparable items in sorted order.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    Spliterator<AnyType> sortedSpliterator( AnyType [ ] a )
+    {
+        return new SortedSpliterator<>( a );
+    }
+
+    // Items gathered by one thread; sorted once, when it is combined or finished
+    private static final class Run<AnyType extends Comparable<? super AnyType>>
+    {
+        private AnyType [ ] items;
+        private int size;
+        private boolean sorted = true;
+
+        @SuppressWarnings( "unchecked" )
+        Run( )
+        {
+            items = (AnyType[]) new Comparable<?>[ 16 ];
+        }
+
+        void add( AnyType x )
+        {
+            if( size == items.length )
+                items = Arrays.copyOf( items, size * 2 );
+            items[ size++ ] = x;
+            sorted = size == 1;
+        }
+
+        /**
+         * Sort both runs and merge other after this one.
+         */
+        Run<AnyType> combine( Run<AnyType> other )
+        {
+            if( other.size == 0 )
+                return this;
+            if( size == 0 )
+                return other;
+
+            AnyType [ ] left = toArray( );
+            AnyType [ ] right = other.toArray( );
+            AnyType [ ] merged = Arrays.copyOf( left, left.length + right.length );
+
+                // Merge from the back; any left items that remain are already in place
+            int i = left.length - 1, j = right.length - 1, k = merged.length - 1;
+            while( i >= 0 && j >= 0 )
+                merged[ k-- ] = right[ j ].compareTo( left[ i ] ) < 0 ? left[ i-- ] : right[ j-- ];
+            while( j >= 0 )
+                merged[ k-- ] = right[ j-- ];
+
+            items = merged;
+            size = merged.length;
+            return this;
+        }
+
+        /**
+         * Return the items in sorted order, trimmed to size.
+         */
+        AnyType [ ] toArray( )
+        {
+            if( size != items.length )
+                items = Arrays.copyOf( items, size );
+            if( !sorted )
+            {
+                Sort.mergeSort( items );
+                sorted = true;
+            }
+            return items;
+        }
+    }
+
+    // A spliterator over a sorted array range, split by halving
+    private static final class SortedSpliterator<AnyType extends Comparable<? super AnyType>>
+        implements Spliterator<AnyType>
+    {
+        private final AnyType [ ] a;
+        private int index;
+        private final int fence;
+
+        SortedSpliterator( AnyType [ ] a )
+        {
+            this( a, 0, a.length );
+        }
+
+        private SortedSpliterator( AnyType [ ] a, int index, int fence )
+        {
+            this.a = a;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        public Spliterator<AnyType> trySplit( )
+        {
+            int lo = index, mid = ( lo + fence ) >>> 1;
+            if( lo >= mid )
+                return null;
+            index = mid;
+            return new SortedSpliterator<>( a, lo, mid );
+        }
+
+        public boolean tryAdvance( Consumer<? super AnyType> action )
+        {
+            if( index >= fence )
+                return false;
+            action.accept( a[ index++ ] );
+            return true;
+        }
+
+        public void forEachRemaining( Consumer<? super AnyType> action )
+        {
+            for( int i = index; i < fence; i++ )
+                action.accept( a[ i ] );
+            index = fence;
+        }
+
+        public long estimateSize( )
+        {
+            return fence - index;
+        }
+
+        public int characteristics( )
+        {
+            return ORDERED | SORTED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+
+        public Comparator<? super AnyType> getComparator( )
+        {
+            return null;    // Natural order
+        }
+    }
+
+    // Compare a collector against collect, toArray, sort and re-stream
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        Integer [ ] a = WorkloadGenerator.boxed( new WorkloadGenerator( 3 ).uniform( N, N * 5 ) );
+
+        for( int trial = 0; trial < 3; trial++ )
+        {
+            long start = System.nanoTime( );
+            List<Integer> list = Arrays.stream( a ).parallel( ).map( x -> x + 1 )
+                                       .collect( Collectors.toList( ) );
+            Integer [ ] copy = list.toArray( new Integer[ 0 ] );
+            Sort.mergeSort( copy );
+            long sum1 = Arrays.stream( copy ).parallel( ).mapToLong( x -> x ).sum( );
+            long time1 = System.nanoTime( ) - start;
+
+            start = System.nanoTime( );
+            long sum2 = Arrays.stream( a ).parallel( ).map( x -> x + 1 )
+                              .collect( SortStreams.<Integer>toSortedStream( ) )
+                              .parallel( ).mapToLong( x -> x ).sum( );
+            long time2 = System.nanoTime( ) - start;
+
+            List<Integer> sorted = Arrays.stream( a ).parallel( ).collect( toSortedList( ) );
+            for( int i = 1; i < sorted.size( ); i++ )
+                if( sorted.get( i - 1 ) > sorted.get( i ) )
+                    System.out.println( "Error: out of order at " + i );
+
+            System.out.println( "collect + mergeSort: " + time1 + ", toSortedStream: " + time2
+                                + ( sum1 == sum2 ? "" : " (sums differ)" ) );
+        }
+    }
+}
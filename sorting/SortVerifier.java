@@ -0,0 +1,247 @@
+package sorting;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Verification of sort results.
+ * A sort is correct when the output is in order and is a permutation of
+ * the input. Order is checked directly; the permutation check compares
+ * an order-independent checksum (the sum of a mixed hash of every item)
+ * taken before and after the sort. A lost, duplicated or corrupted item
+ * changes the checksum unless hashes collide.
+ * Both checks are done in a single parallel pass over the output and
+ * allocate only a few words per chunk, so they can run as a sampled
+ * assertion after production sorts.
+ */
+public final class SortVerifier
+{
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Order-independent checksum of the items of a, using hashCode.
+     * @param a an array of objects; null items are allowed.
+     */
+    public static long checksum( Object [ ] a )
+    {
+        return IntStream.range( 0, chunks( a.length ) ).parallel( ).mapToLong( c -> {
+            long sum = 0;
+            for( int i = c * CHUNK_SIZE, end = chunkEnd( c, a.length ); i < end; i++ )
+                sum += mix( a[ i ] == null ? 0 : a[ i ].hashCode( ) );
+            return sum;
+        } ).sum( );
+    }
+
+    /**
+     * Order-independent checksum of the items of a.
+     */
+    public static long checksum( int [ ] a )
+    {
+        return IntStream.range( 0, chunks( a.length ) ).parallel( ).mapToLong( c -> {
+            long sum = 0;
+            for( int i = c * CHUNK_SIZE, end = chunkEnd( c, a.length ); i < end; i++ )
+                sum += mix( a[ i ] );
+            return sum;
+        } ).sum( );
+    }
+
+    /**
+     * Order-independent checksum of the items of a.
+     */
+    public static long checksum( long [ ] a )
+    {
+        return IntStream.range( 0, chunks( a.length ) ).parallel( ).mapToLong( c -> {
+            long sum = 0;
+            for( int i = c * CHUNK_SIZE, end = chunkEnd( c, a.length ); i < end; i++ )
+                sum += mix( a[ i ] );
+            return sum;
+        } ).sum( );
+    }
+
+    /**
+     * Return the first index i with a[ i ] > a[ i + 1 ], or -1 if a is sorted.
+     * @param a an array of Comparable items.
+     * @throws IllegalArgumentException if a holds null.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    int firstInversion( AnyType [ ] a )
+    {
+        int [ ] first = new int[ chunks( a.length ) ];
+        int [ ] nulls = new int[ first.length ];
+        IntStream.range( 0, first.length ).parallel( ).forEach( c -> {
+            int inversion = -1;
+            nulls[ c ] = -1;
+            for( int i = c * CHUNK_SIZE, end = chunkEnd( c, a.length ); i < end; i++ )
+            {
+                if( a[ i ] == null )
+                {
+                    nulls[ c ] = i;
+                    break;
+                }
+                if( inversion < 0 && i + 1 < a.length && a[ i + 1 ] != null
+                        && a[ i ].compareTo( a[ i + 1 ] ) > 0 )
+                    inversion = i;
+            }
+            first[ c ] = inversion;
+        } );
+        checkNoNulls( nulls );
+        return firstOf( first );
+    }
+
+    /**
+     * Internal method that rejects arrays holding null, which the sorts
+     * cannot order. Each chunk records its first null index, if any,
+     * during the verifying pass; a null ends that chunk's scan.
+     * @param nulls the first null index of each chunk, or -1.
+     */
+    private static void checkNoNulls( int [ ] nulls )
+    {
+        int i = firstOf( nulls );
+        if( i >= 0 )
+            throw new IllegalArgumentException( "null item at index " + i + "; only non-null items can be ordered" );
+    }
+
+    /**
+     * Check that a is sorted and has the checksum of the unsorted input.
+     * Order, checksum and nulls are checked in the same pass.
+     * @param a an array of Comparable items, after sorting.
+     * @param expectedChecksum checksum( a ) taken before sorting.
+     * @throws IllegalArgumentException if a holds null.
+     * @throws IllegalStateException if either check fails.
+     */
+    public static <AnyType extends Comparable<? super AnyType>>
+    void verify( AnyType [ ] a, long expectedChecksum )
+    {
+        int [ ] first = new int[ chunks( a.length ) ];
+        int [ ] nulls = new int[ first.length ];
+        long [ ] sums = new long[ first.length ];
+        IntStream.range( 0, first.length ).parallel( ).forEach( c -> {
+            long sum = 0;
+            int inversion = -1;
+            nulls[ c ] = -1;
+            int end = chunkEnd( c, a.length );
+            for( int i = c * CHUNK_SIZE; i < end; i++ )
+            {
+                if( a[ i ] == null )
+                {
+                    nulls[ c ] = i;
+                    break;
+                }
+                sum += mix( a[ i ].hashCode( ) );
+                if( inversion < 0 && i + 1 < a.length && a[ i + 1 ] != null
+                        && a[ i ].compareTo( a[ i + 1 ] ) > 0 )
+                    inversion = i;
+            }
+            first[ c ] = inversion;
+            sums[ c ] = sum;
+        } );
+        checkNoNulls( nulls );
+        report( firstOf( first ), sum( sums ), expectedChecksum );
+    }
+
+    /**
+     * Check that a is sorted and has the checksum of the unsorted input.
+     * @throws IllegalStateException if either check fails.
+     */
+    public static void verify( int [ ] a, long expectedChecksum )
+    {
+        int [ ] first = new int[ chunks( a.length ) ];
+        long [ ] sums = new long[ first.length ];
+        IntStream.range( 0, first.length ).parallel( ).forEach( c -> {
+            long sum = 0;
+            int inversion = -1;
+            int end = chunkEnd( c, a.length );
+            for( int i = c * CHUNK_SIZE; i < end; i++ )
+            {
+                sum += mix( a[ i ] );
+                if( inversion < 0 && i + 1 < a.length && a[ i ] > a[ i + 1 ] )
+                    inversion = i;
+            }
+            first[ c ] = inversion;
+            sums[ c ] = sum;
+        } );
+        report( firstOf( first ), sum( sums ), expectedChecksum );
+    }
+
+    /**
+     * Check that a is sorted and has the checksum of the unsorted input.
+     * @throws IllegalStateException if either check fails.
+     */
+    public static void verify( long [ ] a, long expectedChecksum )
+    {
+        int [ ] first = new int[ chunks( a.length ) ];
+        long [ ] sums = new long[ first.length ];
+        IntStream.range( 0, first.length ).parallel( ).forEach( c -> {
+            long sum = 0;
+            int inversion = -1;
+            int end = chunkEnd( c, a.length );
+            for( int i = c * CHUNK_SIZE; i < end; i++ )
+            {
+                sum += mix( a[ i ] );
+                if( inversion < 0 && i + 1 < a.length && a[ i ] > a[ i + 1 ] )
+                    inversion = i;
+            }
+            first[ c ] = inversion;
+            sums[ c ] = sum;
+        } );
+        report( firstOf( first ), sum( sums ), expectedChecksum );
+    }
+
+    /**
+     * Decide whether this call should be verified, for sampled assertions.
+     * @param rate the fraction of calls to verify, between 0 and 1.
+     */
+    public static boolean sample( double rate )
+    {
+        return rate >= 1 || ( rate > 0 && ThreadLocalRandom.current( ).nextDouble( ) < rate );
+    }
+
+    private static void report( int inversion, long checksum, long expectedChecksum )
+    {
+        if( inversion >= 0 )
+            throw new IllegalStateException( "not sorted: items " + inversion + " and " + ( inversion + 1 ) + " are out of order" );
+        if( checksum != expectedChecksum )
+            throw new IllegalStateException( "not a permutation of the input: checksum "
+                    + Long.toHexString( checksum ) + ", expected " + Long.toHexString( expectedChecksum ) );
+    }
+
+    /**
+     * The 64-bit finalizer of MurmurHash3, so that sums of
+     * nearby values do not cancel out.
+     */
+    private static long mix( long h )
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int chunks( int n )
+    {
+        return ( n + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+    }
+
+    private static int chunkEnd( int c, int n )
+    {
+        return (int) Math.min( n, (long) ( c + 1 ) * CHUNK_SIZE );
+    }
+
+    private static int firstOf( int [ ] first )
+    {
+        for( int f : first )
+            if( f >= 0 )
+                return f;
+        return -1;
+    }
+
+    private static long sum( long [ ] sums )
+    {
+        long total = 0;
+        for( long s : sums )
+            total += s;
+        return total;
+    }
+}
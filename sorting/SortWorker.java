@@ -0,0 +1,174 @@
+package sorting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A sort worker for DistributedSort. It listens on a socket; each
+ * connection streams one partition of long keys in, which is sorted with
+ * RadixSort.radixSort and streamed back on the same connection.
+ * The stream is a sequence of blocks, each an int count followed by that
+ * many big-endian longs, ended by a block of count 0.
+ * Run as: java sorting.SortWorker port [--parent]
+ * Port 0 picks a free port. The chosen port is printed on the first line
+ * of standard output. With --parent the worker exits when its standard
+ * input closes, so workers started by a coordinator die with it.
+ */
+public final class SortWorker implements AutoCloseable
+{
+    static final int BLOCK_SIZE = 1 << 13;    // keys per block
+    static final String READY = "SortWorker listening on port ";
+
+    private final ServerSocket server;
+    private final ExecutorService connections = Executors.newCachedThreadPool( r -> {
+        Thread t = new Thread( r, "sort-worker" );
+        t.setDaemon( true );
+        return t;
+    } );
+
+    /**
+     * Start a worker that serves connections on background threads.
+     * @param port the port to listen on, or 0 for any free port.
+     */
+    public SortWorker( int port ) throws IOException
+    {
+        server = new ServerSocket( port );
+        Thread acceptor = new Thread( this::acceptLoop, "sort-worker-accept" );
+        acceptor.setDaemon( true );
+        acceptor.start( );
+    }
+
+    public int getPort( )
+    {
+        return server.getLocalPort( );
+    }
+
+    public void close( ) throws IOException
+    {
+        server.close( );
+        connections.shutdownNow( );
+    }
+
+    private void acceptLoop( )
+    {
+        try
+        {
+            for( ; ; )
+            {
+                Socket socket = server.accept( );
+                connections.execute( ( ) -> serve( socket ) );
+            }
+        }
+        catch( IOException e )
+        {
+            // Server socket closed
+        }
+    }
+
+    private static void serve( Socket socket )
+    {
+        try( Socket s = socket )
+        {
+            s.setTcpNoDelay( true );
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream( s.getInputStream( ), 1 << 16 ) );
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream( s.getOutputStream( ), 1 << 16 ) );
+            byte [ ] scratch = new byte[ BLOCK_SIZE * 8 ];
+
+            long [ ] keys = new long[ BLOCK_SIZE ];
+            int n = 0;
+            for( ; ; )
+            {
+                if( keys.length - n < BLOCK_SIZE )
+                    keys = Arrays.copyOf( keys, keys.length * 2 );
+                int count = readBlock( in, keys, n, scratch );
+                if( count == 0 )
+                    break;
+                n += count;
+            }
+
+            keys = Arrays.copyOf( keys, n );
+            RadixSort.radixSort( keys );
+
+            for( int i = 0; i < n; i += BLOCK_SIZE )
+                writeBlock( out, keys, i, Math.min( BLOCK_SIZE, n - i ), scratch );
+            writeEnd( out );
+            out.flush( );
+        }
+        catch( IOException e )
+        {
+            System.err.println( "SortWorker: " + e );
+        }
+    }
+
+    /**
+     * Write one block of keys.
+     * @param count the number of keys, from 1 to BLOCK_SIZE.
+     */
+    static void writeBlock( DataOutputStream out, long [ ] keys, int from, int count,
+                            byte [ ] scratch ) throws IOException
+    {
+        out.writeInt( count );
+        ByteBuffer.wrap( scratch ).asLongBuffer( ).put( keys, from, count );
+        out.write( scratch, 0, count * 8 );
+    }
+
+    /**
+     * Write the empty block that ends a stream.
+     */
+    static void writeEnd( DataOutputStream out ) throws IOException
+    {
+        out.writeInt( 0 );
+    }
+
+    /**
+     * Read one block of keys into dst at offset.
+     * @return the number of keys read; 0 at the end of the stream.
+     */
+    static int readBlock( DataInputStream in, long [ ] dst, int offset,
+                          byte [ ] scratch ) throws IOException
+    {
+        int count = in.readInt( );
+        if( count < 0 || count > BLOCK_SIZE || count > dst.length - offset )
+            throw new IOException( "bad block size: " + count );
+        in.readFully( scratch, 0, count * 8 );
+        ByteBuffer.wrap( scratch ).asLongBuffer( ).get( dst, offset, count );
+        return count;
+    }
+
+    public static void main( String [ ] args ) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 0;
+        boolean parent = args.length > 1 && args[ 1 ].equals( "--parent" );
+
+        SortWorker worker = new SortWorker( port );
+        System.out.println( READY + worker.getPort( ) );
+        System.out.flush( );
+
+        if( parent )
+        {
+            while( System.in.read( ) >= 0 ) { }
+            worker.close( );
+            return;
+        }
+
+        try
+        {
+            Thread.currentThread( ).join( );
+        }
+        catch( InterruptedException e )
+        {
+            worker.close( );
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package sorting;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.zip.CRC32;
+
+/**
+ * A compact on-disk format for sorted runs of String or long keys.
+ * Keys are packed into blocks of about BLOCK_BYTES. Within a block, strings
+ * are front coded (each key stores only the length of the UTF-8 prefix it
+ * shares with the previous key and the rest of its bytes) and longs are
+ * stored as variable-length deltas from the previous key. The first key of
+ * every block is stored whole, so blocks decode independently.
+ * Each block carries a CRC32 of its payload, and a sparse index of the
+ * first key and file offset of every block sits at the end of the file,
+ * so a reader can seek to any key range without scanning the run.
+ *
+ * Layout: header (magic, key type); blocks (count, payload length, CRC,
+ * payload); index (offset and first key of each block); footer (index
+ * offset, block count, index CRC, magic).
+ */
+public final class SortedRunFile
+{
+    private static final int MAGIC = 0x5352554E;  // "SRUN"
+    private static final int BLOCK_BYTES = 16 * 1024;
+    private static final int FOOTER_BYTES = 8 + 4 + 4 + 4;
+
+    private static final byte STRING_KEYS = 0;
+    private static final byte LONG_KEYS = 1;
+
+    /**
+     * Write a sorted array of Strings as a run file.
+     * @param file the file to create or replace.
+     * @param sorted keys in compareTo order.
+     * @throws IllegalArgumentException if the keys are not sorted.
+     */
+    public static void writeStrings( Path file, String [ ] sorted ) throws IOException
+    {
+        for( int i = 0; i < sorted.length - 1; i++ )
+            if( sorted[ i ].compareTo( sorted[ i + 1 ] ) > 0 )
+                throw new IllegalArgumentException( "keys not sorted at " + i );
+
+        try( BlockWriter w = new BlockWriter( file, STRING_KEYS ) )
+        {
+            byte [ ] prev = new byte[ 0 ];
+            for( String s : sorted )
+            {
+                byte [ ] key = s.getBytes( StandardCharsets.UTF_8 );
+                if( w.startKey( ) )
+                {
+                    writeBytes( w.index, key );
+                    prev = new byte[ 0 ];
+                }
+
+                int shared = 0;
+                int max = Math.min( prev.length, key.length );
+                while( shared < max && prev[ shared ] == key[ shared ] )
+                    shared++;
+
+                writeVarLong( w.block, shared );
+                writeVarLong( w.block, key.length - shared );
+                w.block.write( key, shared, key.length - shared );
+                prev = key;
+            }
+        }
+    }
+
+    /**
+     * Write a sorted array of longs as a run file.
+     * @param file the file to create or replace.
+     * @param sorted keys in ascending order.
+     * @throws IllegalArgumentException if the keys are not sorted.
+     */
+    public static void writeLongs( Path file, long [ ] sorted ) throws IOException
+    {
+        for( int i = 0; i < sorted.length - 1; i++ )
+            if( sorted[ i ] > sorted[ i + 1 ] )
+                throw new IllegalArgumentException( "keys not sorted at " + i );
+
+        try( BlockWriter w = new BlockWriter( file, LONG_KEYS ) )
+        {
+            long prev = 0;
+            for( long key : sorted )
+            {
+                if( w.startKey( ) )
+                {
+                    w.index.writeLong( key );
+                    prev = key;
+                }
+                    // Sorted, so the delta is never negative as an unsigned number
+                writeVarLong( w.block, key - prev );
+                prev = key;
+            }
+        }
+    }
+
+    /**
+     * Collects keys into blocks and writes blocks, index and footer.
+     * The index stream gets the first key of each block from the caller.
+     */
+    private static final class BlockWriter implements Closeable
+    {
+        private final OutputStream file;
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream( BLOCK_BYTES + 1024 );
+        private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream( );
+        final DataOutputStream block = new DataOutputStream( blockBytes );
+        final DataOutputStream index = new DataOutputStream( indexBytes );
+        private long offset;
+        private int count;
+        private int blocks;
+
+        BlockWriter( Path path, byte keyType ) throws IOException
+        {
+            file = new BufferedOutputStream( Files.newOutputStream( path ), 1 << 16 );
+            DataOutputStream header = new DataOutputStream( file );
+            header.writeInt( MAGIC );
+            header.writeByte( keyType );
+            offset = 5;
+        }
+
+        /**
+         * Called before each key is written to block.
+         * @return true if the key starts a new block; the caller
+         *         must then write the key to index.
+         */
+        boolean startKey( ) throws IOException
+        {
+            if( count > 0 && blockBytes.size( ) >= BLOCK_BYTES )
+                flushBlock( );
+            if( count++ > 0 )
+                return false;
+
+            index.writeLong( offset );
+            blocks++;
+            return true;
+        }
+
+        private void flushBlock( ) throws IOException
+        {
+            CRC32 crc = new CRC32( );
+            crc.update( blockBytes.toByteArray( ), 0, blockBytes.size( ) );
+
+            DataOutputStream out = new DataOutputStream( file );
+            out.writeInt( count );
+            out.writeInt( blockBytes.size( ) );
+            out.writeInt( (int) crc.getValue( ) );
+            blockBytes.writeTo( out );
+            out.flush( );
+
+            offset += 12 + blockBytes.size( );
+            blockBytes.reset( );
+            count = 0;
+        }
+
+        public void close( ) throws IOException
+        {
+            try
+            {
+                if( count > 0 )
+                    flushBlock( );
+
+                CRC32 crc = new CRC32( );
+                crc.update( indexBytes.toByteArray( ), 0, indexBytes.size( ) );
+
+                DataOutputStream out = new DataOutputStream( file );
+                indexBytes.writeTo( out );
+                out.writeLong( offset );
+                out.writeInt( blocks );
+                out.writeInt( (int) crc.getValue( ) );
+                out.writeInt( MAGIC );
+                out.flush( );
+            }
+            finally
+            {
+                file.close( );
+            }
+        }
+    }
+
+    /**
+     * Open a run file for reading. Only the index is read up front.
+     * @param file the run file.
+     * @throws IOException if the file cannot be read or is not a run file.
+     */
+    public static Reader open( Path file ) throws IOException
+    {
+        return new Reader( file );
+    }
+
+    /**
+     * Reads blocks on demand and seeks by binary search in the index.
+     * Iterators throw UncheckedIOException if a block cannot be read
+     * or fails its checksum.
+     */
+    public static final class Reader implements Closeable
+    {
+        private final FileChannel channel;
+        private final byte keyType;
+        private final long [ ] offsets;
+        private final String [ ] firstStrings;
+        private final long [ ] firstLongs;
+
+        private Reader( Path file ) throws IOException
+        {
+            channel = FileChannel.open( file, StandardOpenOption.READ );
+            try
+            {
+                long size = channel.size( );
+                if( size < 5 + FOOTER_BYTES )
+                    throw new IOException( "not a sorted run file: " + file );
+                ByteBuffer header = read( 0, 5 );
+                ByteBuffer footer = read( size - FOOTER_BYTES, FOOTER_BYTES );
+                if( header.getInt( ) != MAGIC || footer.getInt( FOOTER_BYTES - 4 ) != MAGIC )
+                    throw new IOException( "not a sorted run file: " + file );
+                keyType = header.get( );
+
+                long indexOffset = footer.getLong( );
+                int blocks = footer.getInt( );
+                int indexCrc = footer.getInt( );
+
+                ByteBuffer index = read( indexOffset, (int) ( size - FOOTER_BYTES - indexOffset ) );
+                checkCrc( index, indexCrc, "index" );
+
+                offsets = new long[ blocks ];
+                firstStrings = keyType == STRING_KEYS ? new String[ blocks ] : null;
+                firstLongs = keyType == LONG_KEYS ? new long[ blocks ] : null;
+                for( int b = 0; b < blocks; b++ )
+                {
+                    offsets[ b ] = index.getLong( );
+                    if( keyType == STRING_KEYS )
+                        firstStrings[ b ] = new String( readBytes( index ), StandardCharsets.UTF_8 );
+                    else
+                        firstLongs[ b ] = index.getLong( );
+                }
+            }
+            catch( IOException | RuntimeException e )
+            {
+                channel.close( );
+                throw e;
+            }
+        }
+
+        /**
+         * Return the number of blocks in the run.
+         */
+        public int blockCount( )
+        {
+            return offsets.length;
+        }
+
+        /**
+         * Iterate over the String keys not less than from.
+         * @param from the first key wanted, or null for the whole run.
+         */
+        public Iterator<String> strings( final String from )
+        {
+            if( keyType != STRING_KEYS )
+                throw new IllegalStateException( "run does not hold String keys" );
+
+                // Start in the last block whose first key is less than from
+            int low = 0, high = offsets.length;
+            while( from != null && low < high )
+            {
+                int mid = ( low + high ) >>> 1;
+                if( firstStrings[ mid ].compareTo( from ) < 0 )
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            final int startBlock = Math.max( 0, low - 1 );
+
+            return new Iterator<String>( )
+            {
+                private int nextBlock = startBlock;
+                private String [ ] keys = new String[ 0 ];
+                private int pos;
+
+                {
+                    advance( );
+                    while( from != null && hasNext( ) && keys[ pos ].compareTo( from ) < 0 )
+                        next( );
+                }
+
+                private void advance( )
+                {
+                    while( pos == keys.length && nextBlock < offsets.length )
+                    {
+                        keys = readStringBlock( nextBlock++ );
+                        pos = 0;
+                    }
+                }
+
+                public boolean hasNext( )
+                {
+                    return pos < keys.length;
+                }
+
+                public String next( )
+                {
+                    if( !hasNext( ) )
+                        throw new NoSuchElementException( );
+                    String s = keys[ pos++ ];
+                    advance( );
+                    return s;
+                }
+            };
+        }
+
+        /**
+         * Iterate over the long keys not less than from.
+         * @param from the first key wanted; Long.MIN_VALUE for the whole run.
+         */
+        public PrimitiveIterator.OfLong longs( final long from )
+        {
+            if( keyType != LONG_KEYS )
+                throw new IllegalStateException( "run does not hold long keys" );
+
+            int low = 0, high = offsets.length;
+            while( low < high )
+            {
+                int mid = ( low + high ) >>> 1;
+                if( firstLongs[ mid ] < from )
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            final int startBlock = Math.max( 0, low - 1 );
+
+            return new PrimitiveIterator.OfLong( )
+            {
+                private int nextBlock = startBlock;
+                private long [ ] keys = new long[ 0 ];
+                private int pos;
+
+                {
+                    advance( );
+                    while( hasNext( ) && keys[ pos ] < from )
+                        nextLong( );
+                }
+
+                private void advance( )
+                {
+                    while( pos == keys.length && nextBlock < offsets.length )
+                    {
+                        keys = readLongBlock( nextBlock++ );
+                        pos = 0;
+                    }
+                }
+
+                public boolean hasNext( )
+                {
+                    return pos < keys.length;
+                }
+
+                public long nextLong( )
+                {
+                    if( !hasNext( ) )
+                        throw new NoSuchElementException( );
+                    long key = keys[ pos++ ];
+                    advance( );
+                    return key;
+                }
+            };
+        }
+
+        private String [ ] readStringBlock( int b )
+        {
+            ByteBuffer payload = readBlock( b );
+            String [ ] keys = new String[ payload.getInt( 0 ) ];
+            payload.position( 12 );
+
+            byte [ ] prev = new byte[ 0 ];
+            for( int i = 0; i < keys.length; i++ )
+            {
+                int shared = (int) readVarLong( payload );
+                int rest = (int) readVarLong( payload );
+                byte [ ] key = new byte[ shared + rest ];
+                System.arraycopy( prev, 0, key, 0, shared );
+                payload.get( key, shared, rest );
+                keys[ i ] = new String( key, StandardCharsets.UTF_8 );
+                prev = key;
+            }
+            return keys;
+        }
+
+        private long [ ] readLongBlock( int b )
+        {
+            ByteBuffer payload = readBlock( b );
+            long [ ] keys = new long[ payload.getInt( 0 ) ];
+            payload.position( 12 );
+
+            long prev = firstLongs[ b ];
+            for( int i = 0; i < keys.length; i++ )
+            {
+                prev += readVarLong( payload );
+                keys[ i ] = prev;
+            }
+            return keys;
+        }
+
+        /**
+         * Read block b, with its 12-byte block header, and check its CRC.
+         */
+        private ByteBuffer readBlock( int b )
+        {
+            try
+            {
+                ByteBuffer head = read( offsets[ b ], 12 );
+                int length = head.getInt( 4 );
+                int crc = head.getInt( 8 );
+
+                ByteBuffer block = read( offsets[ b ], 12 + length );
+                ByteBuffer payload = block.duplicate( );
+                payload.position( 12 );
+                checkCrc( payload.slice( ), crc, "block " + b );
+                return block;
+            }
+            catch( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+        }
+
+        private ByteBuffer read( long position, int length ) throws IOException
+        {
+            ByteBuffer buf = ByteBuffer.allocate( length );
+            while( buf.hasRemaining( ) )
+                if( channel.read( buf, position + buf.position( ) ) < 0 )
+                    throw new IOException( "unexpected end of run file" );
+            buf.flip( );
+            return buf;
+        }
+
+        public void close( ) throws IOException
+        {
+            channel.close( );
+        }
+    }
+
+    private static void checkCrc( ByteBuffer data, int expected, String what ) throws IOException
+    {
+        CRC32 crc = new CRC32( );
+        crc.update( data.array( ), data.arrayOffset( ) + data.position( ), data.remaining( ) );
+        if( (int) crc.getValue( ) != expected )
+            throw new IOException( "checksum mismatch in " + what );
+    }
+
+    private static void writeBytes( DataOutputStream out, byte [ ] b ) throws IOException
+    {
+        writeVarLong( out, b.length );
+        out.write( b );
+    }
+
+    private static byte [ ] readBytes( ByteBuffer in )
+    {
+        byte [ ] b = new byte[ (int) readVarLong( in ) ];
+        in.get( b );
+        return b;
+    }
+
+    /**
+     * Write x as an unsigned LEB128 varint: 7 bits per byte, low bits first.
+     */
+    private static void writeVarLong( DataOutputStream out, long x ) throws IOException
+    {
+        while( ( x & ~0x7FL ) != 0 )
+        {
+            out.writeByte( (int) ( x & 0x7F ) | 0x80 );
+            x >>>= 7;
+        }
+        out.writeByte( (int) x );
+    }
+
+    private static long readVarLong( ByteBuffer in )
+    {
+        long x = 0;
+        for( int shift = 0; ; shift += 7 )
+        {
+            byte b = in.get( );
+            x |= (long) ( b & 0x7F ) << shift;
+            if( b >= 0 )
+                return x;
+        }
+    }
+
+    // Write sorted runs and compare their size with the raw keys
+    public static void main( String [ ] args ) throws IOException
+    {
+        final int N = 1000000;
+        WorkloadGenerator gen = new WorkloadGenerator( 41 );
+
+        String [ ] strings = gen.strings( N, 10, 10 );
+        RadixSort.countingRadixSort( strings, 10 );
+        long [ ] longs = new long[ N ];
+        int [ ] gaps = gen.uniform( N, 1000 );
+        for( int i = 1; i < N; i++ )
+            longs[ i ] = longs[ i - 1 ] + gaps[ i ];
+
+        Path stringFile = Files.createTempFile( "strings", ".run" );
+        Path longFile = Files.createTempFile( "longs", ".run" );
+        try
+        {
+            writeStrings( stringFile, strings );
+            writeLongs( longFile, longs );
+            System.out.println( "String run: " + Files.size( stringFile ) + " bytes for " + 10L * N + " bytes of keys" );
+            System.out.println( "Long run: " + Files.size( longFile ) + " bytes for " + 8L * N + " bytes of keys" );
+
+            try( Reader r = open( stringFile ) )
+            {
+                Iterator<String> it = r.strings( strings[ N / 2 ] );
+                for( int i = N / 2; i < N; i++ )
+                    if( !it.next( ).equals( strings[ i ] ) )
+                        System.out.println( "Error at " + i );
+            }
+            try( Reader r = open( longFile ) )
+            {
+                PrimitiveIterator.OfLong it = r.longs( longs[ N / 3 ] + 1 );
+                int i = N / 3 + 1;
+                while( longs[ i ] == longs[ N / 3 ] )
+                    i++;
+                for( ; i < N; i++ )
+                    if( it.nextLong( ) != longs[ i ] )
+                        System.out.println( "Error at " + i );
+            }
+            System.out.println( "Finished range reads" );
+        }
+        finally
+        {
+            Files.delete( stringFile );
+            Files.delete( longFile );
+        }
+    }
+}
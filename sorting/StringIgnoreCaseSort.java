@@ -0,0 +1,315 @@
+package sorting;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Sorting routines specialized for String arrays in String.CASE_INSENSITIVE_ORDER.
+ * Comparisons are String.CASE_INSENSITIVE_ORDER.compare( x, y ), a call the JIT can inline, where a
+ * generic engine shares one compareTo or Comparator call site for
+ * every type and ordering it sees.
+ * GENERATED by SortGenerator from SortEngine.template; do not edit.
+ */
+public final class StringIgnoreCaseSort
+{
+    private static final int CUTOFF = 3;
+
+    private StringIgnoreCaseSort( )
+    {
+    }
+
+    /**
+     * Internal method that compares two items and counts the comparison.
+     */
+    private static int compare( String x, String y )
+    {
+        SortMetrics.comparison( );
+        return String.CASE_INSENSITIVE_ORDER.compare( x, y );
+    }
+
+    /**
+     * Simple insertion sort.
+     * @param a an array of String items.
+     */
+    public static void insertionSort( String [ ] a )
+    {
+        insertionSort( a, 0, a.length - 1 );
+    }
+
+    /**
+     * Standard heapsort.
+     * @param a an array of String items.
+     */
+    public static void heapsort( String [ ] a )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            for( int i = a.length / 2 - 1; i >= 0; i-- )  /* buildHeap */
+                percDown( a, i, a.length );
+            for( int i = a.length - 1; i > 0; i-- )
+            {
+                swapReferences( a, 0, i );                /* deleteMax */
+                percDown( a, 0, i );
+            }
+        }
+        finally
+        {
+            SortMetrics.end( "heapsort", a.length );
+        }
+    }
+
+    /**
+     * Internal method for heapsort that is used in deleteMax and buildHeap.
+     * @param a an array of String items.
+     * @param i the position from which to percolate down.
+     * @param n the logical size of the binary heap.
+     */
+    private static void percDown( String [ ] a, int i, int n )
+    {
+        int child;
+        String tmp;
+
+        for( tmp = a[ i ]; 2 * i + 1 < n; i = child )
+        {
+            child = 2 * i + 1;
+            if( child != n - 1 && compare( a[ child ], a[ child + 1 ] ) < 0 )
+                child++;
+            if( compare( tmp, a[ child ] ) < 0 )
+                a[ i ] = a[ child ];
+            else
+                break;
+        }
+        a[ i ] = tmp;
+    }
+
+    /**
+     * Mergesort algorithm.
+     * @param a an array of String items.
+     */
+    public static void mergeSort( String [ ] a )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            String [ ] tmpArray = new String[ a.length ];
+            SortMetrics.scratch( (long) a.length * SortMetrics.REFERENCE_BYTES );
+
+            mergeSort( a, tmpArray, 0, a.length - 1 );
+        }
+        finally
+        {
+            SortMetrics.end( "mergeSort", a.length );
+        }
+    }
+
+    /**
+     * Internal method that makes recursive calls.
+     * @param a an array of String items.
+     * @param tmpArray an array to place the merged result.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     */
+    private static void mergeSort( String [ ] a, String [ ] tmpArray, int left, int right )
+    {
+        if( left < right )
+        {
+            int center = ( left + right ) / 2;
+            mergeSort( a, tmpArray, left, center );
+            mergeSort( a, tmpArray, center + 1, right );
+            merge( a, tmpArray, left, center + 1, right );
+        }
+    }
+
+    /**
+     * Internal method that merges two sorted halves of a subarray.
+     * @param a an array of String items.
+     * @param tmpArray an array to place the merged result.
+     * @param leftPos the left-most index of the subarray.
+     * @param rightPos the index of the start of the second half.
+     * @param rightEnd the right-most index of the subarray.
+     */
+    private static void merge( String [ ] a, String [ ] tmpArray, int leftPos, int rightPos, int rightEnd )
+    {
+        int leftEnd = rightPos - 1;
+        int tmpPos = leftPos;
+        int numElements = rightEnd - leftPos + 1;
+
+        // Main loop
+        while( leftPos <= leftEnd && rightPos <= rightEnd )
+            if( compare( a[ leftPos ], a[ rightPos ] ) <= 0 )
+                tmpArray[ tmpPos++ ] = a[ leftPos++ ];
+            else
+                tmpArray[ tmpPos++ ] = a[ rightPos++ ];
+
+        while( leftPos <= leftEnd )    // Copy rest of first half
+            tmpArray[ tmpPos++ ] = a[ leftPos++ ];
+
+        while( rightPos <= rightEnd )  // Copy rest of right half
+            tmpArray[ tmpPos++ ] = a[ rightPos++ ];
+
+        // Copy tmpArray back
+        for( int i = 0; i < numElements; i++, rightEnd-- )
+            a[ rightEnd ] = tmpArray[ rightEnd ];
+        SortMetrics.moves( 2L * numElements );
+    }
+
+    /**
+     * Quicksort algorithm.
+     * @param a an array of String items.
+     */
+    public static void quicksort( String [ ] a )
+    {
+        SortMetrics.begin( );
+        try
+        {
+            quicksort( a, 0, a.length - 1 );
+        }
+        finally
+        {
+            SortMetrics.end( "quicksort", a.length );
+        }
+    }
+
+    private static void swapReferences( String [ ] a, int index1, int index2 )
+    {
+        String tmp = a[ index1 ];
+        a[ index1 ] = a[ index2 ];
+        a[ index2 ] = tmp;
+        SortMetrics.swap( );
+    }
+
+    /**
+     * Return median of left, center, and right.
+     * Order these and hide the pivot.
+     */
+    private static String median3( String [ ] a, int left, int right )
+    {
+        int center = ( left + right ) / 2;
+        if( compare( a[ center ], a[ left ] ) < 0 )
+            swapReferences( a, left, center );
+        if( compare( a[ right ], a[ left ] ) < 0 )
+            swapReferences( a, left, right );
+        if( compare( a[ right ], a[ center ] ) < 0 )
+            swapReferences( a, center, right );
+
+            // Place pivot at position right - 1
+        swapReferences( a, center, right - 1 );
+        return a[ right - 1 ];
+    }
+
+    /**
+     * Internal quicksort method that makes recursive calls.
+     * Uses median-of-three partitioning and a cutoff of 3.
+     * @param a an array of String items.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     */
+    private static void quicksort( String [ ] a, int left, int right )
+    {
+        if( left + CUTOFF <= right )
+        {
+            String pivot = median3( a, left, right );
+
+                // Begin partitioning
+            int i = left, j = right - 1;
+            for( ; ; )
+            {
+                while( compare( a[ ++i ], pivot ) < 0 ) { }
+                while( compare( a[ --j ], pivot ) > 0 ) { }
+                if( i < j )
+                    swapReferences( a, i, j );
+                else
+                    break;
+            }
+
+            swapReferences( a, i, right - 1 );   // Restore pivot
+
+            quicksort( a, left, i - 1 );    // Sort small elements
+            quicksort( a, i + 1, right );   // Sort large elements
+        }
+        else  // Do an insertion sort on the subarray
+            insertionSort( a, left, right );
+    }
+
+    /**
+     * Internal insertion sort routine for subarrays.
+     * @param a an array of String items.
+     * @param left the left-most index of the subarray.
+     * @param right the right-most index of the subarray.
+     */
+    private static void insertionSort( String [ ] a, int left, int right )
+    {
+        for( int p = left + 1; p <= right; p++ )
+        {
+            String tmp = a[ p ];
+            int j;
+
+            for( j = p; j > left && compare( tmp, a[ j - 1 ] ) < 0; j-- )
+                a[ j ] = a[ j - 1 ];
+            a[ j ] = tmp;
+        }
+    }
+
+    // Time against Arrays.sort( a, String.CASE_INSENSITIVE_ORDER ) after the generic call sites have seen several types
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        Random rnd = new Random( 0 );
+        String [ ] input = new String[ N ];
+        for( int i = 0; i < N; i++ )
+            input[ i ] = Long.toString( rnd.nextLong( ), 36 ).toUpperCase( ) + Long.toString( rnd.nextLong( ), 36 );
+
+        Integer [ ] ints = new Integer[ 20000 ];
+        String [ ] strings = new String[ 20000 ];
+        Long [ ] longs = new Long[ 20000 ];
+        for( int i = 0; i < ints.length; i++ )
+        {
+            ints[ i ] = rnd.nextInt( );
+            strings[ i ] = Integer.toString( rnd.nextInt( ), 36 );
+            longs[ i ] = rnd.nextLong( );
+        }
+        for( int round = 0; round < 5; round++ )
+        {
+            Sort.mergeSort( ints.clone( ) );
+            Sort.mergeSort( strings.clone( ) );
+            Sort.mergeSort( longs.clone( ) );
+            Sort.quicksort( ints.clone( ) );
+            Sort.quicksort( strings.clone( ) );
+            Sort.quicksort( longs.clone( ) );
+            Arrays.sort( ints.clone( ), Comparator.reverseOrder( ) );
+            Arrays.sort( strings.clone( ), String.CASE_INSENSITIVE_ORDER );
+            Arrays.sort( longs.clone( ), Comparator.naturalOrder( ) );
+        }
+
+        for( int round = 0; round < 3; round++ )
+        {
+            String [ ] a = input.clone( );
+            long start = System.nanoTime( );
+            Arrays.sort( a, String.CASE_INSENSITIVE_ORDER );
+            long generic = System.nanoTime( ) - start;
+
+            String [ ] b = input.clone( );
+            start = System.nanoTime( );
+            mergeSort( b );
+            long specialized = System.nanoTime( ) - start;
+
+            String [ ] c = input.clone( );
+            start = System.nanoTime( );
+            quicksort( c );
+            long specializedQuick = System.nanoTime( ) - start;
+
+            if( !Arrays.equals( a, b ) )
+                System.out.println( "Error: mergeSort result differs" );
+            for( int i = 1; i < N; i++ )
+                if( compare( c[ i - 1 ], c[ i ] ) > 0 )
+                {
+                    System.out.println( "Error: quicksort out of order at " + i );
+                    break;
+                }
+            System.out.println( "generic " + generic + "; StringIgnoreCaseSort mergeSort " + specialized
+                                + ", quicksort " + specializedQuick );
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package sorting;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded generators for benchmark and test data.
+ * The same seed always gives the same data, whatever the number of threads:
+ * the output is cut into fixed-size chunks and every chunk draws from its own
+ * SplittableRandom, split off in chunk order, so chunks can be filled in parallel.
+ * Each call splits a fresh stream from the root, so a sequence of calls
+ * on one generator is reproducible too.
+ */
+public final class WorkloadGenerator
+{
+    private static final int CHUNK_SIZE = 1 << 14;
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    private final SplittableRandom root;
+
+    /**
+     * Construct the generator.
+     * @param seed the seed; equal seeds give equal data.
+     */
+    public WorkloadGenerator( long seed )
+    {
+        root = new SplittableRandom( seed );
+    }
+
+    /**
+     * Uniform values in [0, bound).
+     */
+    public int [ ] uniform( int n, int bound )
+    {
+        int [ ] a = new int[ n ];
+        fill( n, ( rnd, from, to ) -> {
+            for( int i = from; i < to; i++ )
+                a[ i ] = rnd.nextInt( bound );
+        } );
+        return a;
+    }
+
+    /**
+     * Zipfian values in [0, distinct): value k is drawn with
+     * probability proportional to 1 / (k + 1)^exponent.
+     */
+    public int [ ] zipf( int n, int distinct, double exponent )
+    {
+        double [ ] cdf = new double[ distinct ];
+        double sum = 0;
+        for( int k = 0; k < distinct; k++ )
+        {
+            sum += 1.0 / Math.pow( k + 1, exponent );
+            cdf[ k ] = sum;
+        }
+        double total = sum;
+
+        int [ ] a = new int[ n ];
+        fill( n, ( rnd, from, to ) -> {
+            for( int i = from; i < to; i++ )
+                a[ i ] = lowerBound( cdf, rnd.nextDouble( ) * total );
+        } );
+        return a;
+    }
+
+    /**
+     * Uniform values in [0, min(n * 5, 2^31 - 1)), in ascending order.
+     */
+    public int [ ] sorted( int n )
+    {
+        int [ ] a = uniform( n, (int) Math.max( 1, Math.min( Integer.MAX_VALUE, 5L * n ) ) );
+        RadixSort.radixSort( a );
+        return a;
+    }
+
+    /**
+     * Uniform values in [0, min(n * 5, 2^31 - 1)), in descending order.
+     */
+    public int [ ] reverse( int n )
+    {
+        int [ ] a = sorted( n );
+        for( int i = 0, j = n - 1; i < j; i++, j-- )
+        {
+            int tmp = a[ i ];
+            a[ i ] = a[ j ];
+            a[ j ] = tmp;
+        }
+        return a;
+    }
+
+    /**
+     * Ascending values with a fraction of the positions swapped with a nearby one.
+     * @param swapFraction the number of swaps as a fraction of n.
+     */
+    public int [ ] nearlySorted( int n, double swapFraction )
+    {
+        int [ ] a = sorted( n );
+        SplittableRandom rnd = root.split( );
+        int swaps = (int) ( n * swapFraction );
+        for( int s = 0; s < swaps && n > 1; s++ )
+        {
+            int i = rnd.nextInt( n );
+            int j = Math.min( n - 1, Math.max( 0, i + rnd.nextInt( -16, 17 ) ) );
+            int tmp = a[ i ];
+            a[ i ] = a[ j ];
+            a[ j ] = tmp;
+        }
+        return a;
+    }
+
+    /**
+     * Uniform values from only a few distinct keys, [0, distinct).
+     */
+    public int [ ] fewUnique( int n, int distinct )
+    {
+        return uniform( n, distinct );
+    }
+
+    /**
+     * Organ pipe: 0, 1, ..., n/2, ..., 1, 0.
+     */
+    public int [ ] organPipe( int n )
+    {
+        int [ ] a = new int[ n ];
+        for( int i = 0; i < n; i++ )
+            a[ i ] = Math.min( i, n - 1 - i );
+        return a;
+    }
+
+    /**
+     * Lowercase strings with lengths uniform in [minLen, maxLen].
+     */
+    public String [ ] strings( int n, int minLen, int maxLen )
+    {
+        String [ ] a = new String[ n ];
+        fill( n, ( rnd, from, to ) -> {
+            char [ ] buf = new char[ maxLen ];
+            for( int i = from; i < to; i++ )
+            {
+                int len = rnd.nextInt( minLen, maxLen + 1 );
+                randomChars( rnd, buf, 0, len );
+                a[ i ] = new String( buf, 0, len );
+            }
+        } );
+        return a;
+    }
+
+    /**
+     * Lowercase strings that all start with the same random prefix,
+     * the worst case for comparison sorts and MSD radix sorts.
+     */
+    public String [ ] sharedPrefix( int n, int prefixLen, int suffixLen )
+    {
+        char [ ] prefix = new char[ prefixLen ];
+        randomChars( root.split( ), prefix, 0, prefixLen );
+
+        String [ ] a = new String[ n ];
+        fill( n, ( rnd, from, to ) -> {
+            char [ ] buf = new char[ prefixLen + suffixLen ];
+            System.arraycopy( prefix, 0, buf, 0, prefixLen );
+            for( int i = from; i < to; i++ )
+            {
+                randomChars( rnd, buf, prefixLen, prefixLen + suffixLen );
+                a[ i ] = new String( buf );
+            }
+        } );
+        return a;
+    }
+
+    /**
+     * Box an int array for the Comparable sorts in Sort.
+     */
+    public static Integer [ ] boxed( int [ ] a )
+    {
+        Integer [ ] b = new Integer[ a.length ];
+        for( int i = 0; i < a.length; i++ )
+            b[ i ] = a[ i ];
+        return b;
+    }
+
+    /**
+     * Fills positions [from, to) of the output from rnd.
+     */
+    private interface ChunkFiller
+    {
+        void fill( SplittableRandom rnd, int from, int to );
+    }
+
+    /**
+     * Internal method that cuts [0, n) into chunks, gives each chunk its
+     * own random stream, and fills the chunks in parallel.
+     */
+    private void fill( int n, ChunkFiller filler )
+    {
+        int chunks = ( n + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+        SplittableRandom [ ] streams = new SplittableRandom[ chunks ];
+        for( int c = 0; c < chunks; c++ )
+            streams[ c ] = root.split( );
+
+        IntStream.range( 0, chunks ).parallel( ).forEach( c ->
+            filler.fill( streams[ c ], c * CHUNK_SIZE, Math.min( n, ( c + 1 ) * CHUNK_SIZE ) ) );
+    }
+
+    private static void randomChars( SplittableRandom rnd, char [ ] buf, int from, int to )
+    {
+        for( int i = from; i < to; i++ )
+            buf[ i ] = ALPHABET.charAt( rnd.nextInt( ALPHABET.length( ) ) );
+    }
+
+    /**
+     * Return the first index whose value is at least x.
+     */
+    private static int lowerBound( double [ ] a, double x )
+    {
+        int low = 0, high = a.length - 1;
+        while( low < high )
+        {
+            int mid = ( low + high ) >>> 1;
+            if( a[ mid ] < x )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    // Time the generators against RandomStringGenerator
+    public static void main( String [ ] args )
+    {
+        final int N = 1000000;
+        WorkloadGenerator gen = new WorkloadGenerator( 42 );
+
+        long start = System.nanoTime( );
+        RandomStringGenerator rand = new RandomStringGenerator( 42 );
+        for( int i = 0; i < N; i++ )
+            rand.RandomString( 10 );
+        System.out.println( "RandomStringGenerator time: " + ( System.nanoTime( ) - start ) );
+
+        start = System.nanoTime( );
+        gen.strings( N, 10, 10 );
+        System.out.println( "WorkloadGenerator.strings time: " + ( System.nanoTime( ) - start ) );
+
+        start = System.nanoTime( );
+        gen.zipf( N, 100000, 1.0 );
+        System.out.println( "WorkloadGenerator.zipf time: " + ( System.nanoTime( ) - start ) );
+
+        int [ ] a = new WorkloadGenerator( 7 ).uniform( N, 100 );
+        int [ ] b = new WorkloadGenerator( 7 ).uniform( N, 100 );
+        System.out.println( "Reproducible: " + Arrays.equals( a, b ) );
+    }
+}